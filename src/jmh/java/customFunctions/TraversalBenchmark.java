@@ -0,0 +1,219 @@
+package customFunctions;
+
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.io.fs.FileUtils;
+import org.neo4j.kernel.api.procedure.GlobalProcedures;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of {@code custom.traverseGraph} and {@code custom.advancedTraverseGraph} on synthetic graphs
+ * in an embedded database, one walk per operation.
+ * <p>
+ * The {@link Shape} of the graph and its size are parameters; every walk starts at the same root, and the advanced
+ * procedure walks to a terminal every route of the shape can reach. The {@link HopCounter} reports the hops walked
+ * as a secondary result, so the throughput in hops per second sits next to the operations per second, and with
+ * {@code -prof gc} the allocation per hop is {@code gc.alloc.rate.norm} divided by the hops per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraversalBenchmark {
+
+    private static final Label BENCH = Label.label("Bench");
+    private static final RelationshipType RELATION = RelationshipType.withName("RELATION");
+    private static final RelationshipType NOISE = RelationshipType.withName("NOISE");
+    private static final int BATCH_SIZE = 10_000;
+
+    /**
+     * The synthetic graphs walked, each with {@code size} nodes besides its root and terminal.
+     */
+    public enum Shape {
+        /** A single route of {@code size} hops, so every node is expanded once. */
+        CHAIN,
+        /** A tree with 10 children per node whose leaves all lead to the terminal; routes are short, expansions wide. */
+        FAN_OUT,
+        /** A root linked to all other nodes by a type the walk rejects, besides a route of 11 hops to the terminal. */
+        SUPERNODE,
+        /** A ring with a chord from every node, so walks end on a visited node instead of the unreachable terminal. */
+        CYCLE
+    }
+
+    @Param({"CHAIN", "FAN_OUT", "SUPERNODE", "CYCLE"})
+    public Shape shape;
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"greedy"})
+    public String algorithm;
+
+    private Path directory;
+    private DatabaseManagementService managementService;
+    private GraphDatabaseService db;
+    private long rootNodeId;
+    private long terminalNodeId;
+    private Map<String, Object> config;
+
+    @Setup(Level.Trial)
+    public void createGraph() throws IOException, KernelException {
+        directory = Files.createTempDirectory("traversal-benchmark");
+        managementService = new DatabaseManagementServiceBuilder(directory).build();
+        db = managementService.database(GraphDatabaseSettings.DEFAULT_DATABASE_NAME);
+        GlobalProcedures procedures = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(GlobalProcedures.class);
+        procedures.registerProcedure(BasicCustomProcedure.class);
+        procedures.registerProcedure(AdvancedCustomProcedure.class);
+        config = shape == Shape.SUPERNODE
+                ? Map.of("algorithm", algorithm, "relationships", Map.of("whiteList", "RELATION"))
+                : Map.of("algorithm", algorithm);
+
+        Random random = new Random(42);
+        long[] ids = createNodes(size + 2, random);
+        rootNodeId = ids[0];
+        terminalNodeId = ids[size + 1];
+        switch (shape) {
+            case CHAIN:
+                createRelationships(size + 1, (tx, i) -> link(tx, ids[i], ids[i + 1], RELATION));
+                break;
+            case FAN_OUT:
+                createRelationships(size, (tx, i) -> link(tx, ids[i / 10], ids[i + 1], RELATION));
+                createRelationships(size, (tx, i) -> {
+                    if ((i + 1) * 10 >= size) {
+                        link(tx, ids[i + 1], ids[size + 1], RELATION);
+                    }
+                });
+                break;
+            case SUPERNODE:
+                createRelationships(size - 10, (tx, i) -> link(tx, ids[0], ids[i + 11], NOISE));
+                createRelationships(11, (tx, i) -> link(tx, ids[i], ids[i == 10 ? size + 1 : i + 1], RELATION));
+                break;
+            case CYCLE:
+                createRelationships(size, (tx, i) -> {
+                    link(tx, ids[i + 1], ids[(i + 1) % size + 1], RELATION);
+                    link(tx, ids[i + 1], ids[(i + 7) % size + 1], RELATION);
+                });
+                createRelationships(1, (tx, i) -> link(tx, ids[0], ids[1], RELATION));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void dropGraph() throws IOException {
+        managementService.shutdown();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public long traverseGraph(HopCounter counter) {
+        try (Transaction tx = db.beginTx()) {
+            Result result = tx.execute("call custom.traverseGraph($root, 'value', $config) yield nodes return size(nodes) as hops",
+                    Map.of("root", tx.getNodeById(rootNodeId), "config", config));
+            return counter.count((Long) result.next().get("hops"));
+        }
+    }
+
+    @Benchmark
+    public long advancedTraverseGraph(HopCounter counter) {
+        try (Transaction tx = db.beginTx()) {
+            Result result = tx.execute("call custom.advancedTraverseGraph($root, $terminal, 'value', $config) yield relationships return size(relationships) as hops",
+                    Map.of("root", tx.getNodeById(rootNodeId), "terminal", tx.getNodeById(terminalNodeId), "config", config));
+            return counter.count((Long) result.next().get("hops"));
+        }
+    }
+
+    @Benchmark
+    public long advancedTraverseGraphIds(HopCounter counter) {
+        try (Transaction tx = db.beginTx()) {
+            Result result = tx.execute("call custom.advancedTraverseGraph.ids($root, $terminal, 'value', $config) yield relationshipIds return size(relationshipIds) as hops",
+                    Map.of("root", tx.getNodeById(rootNodeId), "terminal", tx.getNodeById(terminalNodeId), "config", config));
+            return counter.count((Long) result.next().get("hops"));
+        }
+    }
+
+    /**
+     * The hops walked during an iteration, reported by JMH as a rate next to the operations.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class HopCounter {
+        public long hops;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hops = 0;
+        }
+
+        long count(long walked) {
+            hops += walked;
+            return walked;
+        }
+    }
+
+    private long[] createNodes(int count, Random random) {
+        long[] ids = new long[count];
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            try (Transaction tx = db.beginTx()) {
+                for (int i = from; i < Math.min(count, from + BATCH_SIZE); i++) {
+                    Node node = tx.createNode(BENCH);
+                    node.setProperty("value", random.nextInt(1000));
+                    ids[i] = node.getId();
+                }
+                tx.commit();
+            }
+        }
+        return ids;
+    }
+
+    private void createRelationships(int count, RelationshipCreator creator) {
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            try (Transaction tx = db.beginTx()) {
+                for (int i = from; i < Math.min(count, from + BATCH_SIZE); i++) {
+                    creator.create(tx, i);
+                }
+                tx.commit();
+            }
+        }
+    }
+
+    private static void link(Transaction tx, long startNodeId, long endNodeId, RelationshipType type) {
+        tx.getNodeById(startNodeId).createRelationshipTo(tx.getNodeById(endNodeId), type);
+    }
+
+    private interface RelationshipCreator {
+        void create(Transaction tx, int index);
+    }
+}
@@ -1,22 +1,33 @@
 package customFunctions;
 
-import org.neo4j.graphdb.Direction;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class AdvancedCustomProcedure {
 
+    @Context
+    public Transaction tx;
+
+    @Context
+    public GraphDatabaseService db;
+
     @Procedure(name = "custom.advancedTraverseGraph")
-    @Description("Get path from root node to terminating node that traverses the path with highest values of property 'prop'")
+    @Description("Get path from root node to terminating node that traverses the path with highest values of property 'prop'; when config 'maxDepth', 'maxVisited' or 'timeoutMs' ends the search first, the path is empty and 'limit' names that option; config 'profile: true' fills 'profile' with the relationships read per expanded node, the neighbours rejected per reason, the db hits and the elapsed nanoseconds, and bypasses the caches of config 'cache'")
     public Stream<TraversalResult> advanceTraverseTree(@Name("root") Node rootNode,
                                                        @Name("terminal") Node terminalNode,
                                                        @Name("property") String prop,
@@ -27,105 +38,624 @@ public class AdvancedCustomProcedure {
         Objects.requireNonNull(prop);
         Objects.requireNonNull(config);
 
-        long maxDepth = (!config.isEmpty() && config.containsKey("maxDepth")) ? (long) config.get("maxDepth") : Long.MAX_VALUE;
-        List<String> nodeWhiteList = extractListFromConfig(config, "nodes", "whiteList");
-        List<String> nodeBlackList = extractListFromConfig(config, "nodes", "blackList");
-        List<String> relationshipWhiteList = extractListFromConfig(config, "relationships", "whiteList");
-        List<String> relationshipBlackList = extractListFromConfig(config, "relationships", "blackList");
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.advancedTraverseGraph", prop);
+        TraversalPath path;
+        TraversalProfile profile;
+        try (Traversal traversal = Traversal.create(internalTx.kernelTransaction(), prop, TraversalConfig.of(config))) {
+            long start = System.nanoTime();
+            path = traversal.traverse(rootNode.getId(), terminalNode.getId());
+            long nanos = System.nanoTime() - start;
+            profile = traversal.profile();
+            if (profile != null) {
+                profile.finish(traversal.counters(), nanos);
+            }
+            metrics.record(path, traversal.counters(), nanos);
+        }
 
-        List<Relationship> listOfRelationships = new ArrayList<>();
-        Map<String, Node> mapOfNodes = new HashMap<>();
-        mapOfNodes.put(String.valueOf(rootNode.getId()), rootNode);
-
-        processNode(rootNode, terminalNode, prop, listOfRelationships, mapOfNodes, maxDepth, nodeWhiteList, nodeBlackList, relationshipWhiteList, relationshipBlackList, 1);
-
-        return Stream.of(TraversalResult.of(listOfRelationships, mapOfNodes));
-    }
-
-    private void processNode(Node rootNode,
-                             Node terminalNode,
-                             String property,
-                             List<Relationship> listOfRelationships,
-                             Map<String, Node> mapOfNodes,
-                             long maxDepth,
-                             List<String> nodeWhiteList,
-                             List<String> nodeBlackList,
-                             List<String> relationshipWhiteList,
-                             List<String> relationshipBlackList,
-                             long level) {
-        if (level > maxDepth) {
-            listOfRelationships.clear();
-            mapOfNodes.clear();
-            return;
-        }
-        boolean nodeFound = false;
-        boolean terminated = false;
-        Long currentMaxValue = Long.MIN_VALUE;
-        Node chosenChildNode = null;
-        Relationship chosenChildRelationship = null;
-        Iterable<Relationship> relationships = rootNode.getRelationships(Direction.OUTGOING);
-        for (Relationship relationship : relationships) {
-            Node childNode = relationship.getOtherNode(rootNode);
-            if (childNode.getId() != terminalNode.getId()) {
-                List<String> nodeLabels = StreamSupport.stream(childNode.getLabels().spliterator(), false).map(Label::name).collect(Collectors.toList());
-                String relType = relationship.getType().name();
-                if ((relationshipWhiteList.isEmpty() || relationshipWhiteList.contains(relType))
-                        && (relationshipBlackList.isEmpty() || !relationshipBlackList.contains(relType))
-                        && (nodeWhiteList.isEmpty() || nodeLabels.stream().anyMatch(nodeWhiteList::contains))
-                        && (nodeBlackList.isEmpty() || nodeLabels.stream().noneMatch(nodeBlackList::contains))) {
-                    if (childNode.hasProperty(property)) {
-                        Long propertyValue = (Long) childNode.getProperty(property);
-                        if (propertyValue > currentMaxValue) {
-                            chosenChildNode = childNode;
-                            chosenChildRelationship = relationship;
-                            currentMaxValue = propertyValue;
-                            nodeFound = true;
-                        }
-                    }
-                }
-            } else {
-                listOfRelationships.add(relationship);
-                mapOfNodes.put(String.valueOf(terminalNode.getId()), terminalNode);
-                terminated = true;
-                break;
+        TraversalResult result = toTraversalResult(rootNode, path, internalTx);
+        return Stream.of(profile == null ? result : TraversalResult.of(result.relationships, result.nodes, result.limit, profile.toMap()));
+    }
+
+    @Procedure(name = "custom.advancedTraverseGraph.ids")
+    @Description("Get the ids of the nodes and relationships on the path from root node to terminating node that traverses the path with highest values of property 'prop', without their properties; config 'includeValues: true' adds the value of 'prop' of each node")
+    public Stream<IdTraversalResult> advanceTraverseTreeIds(@Name("root") Node rootNode,
+                                                            @Name("terminal") Node terminalNode,
+                                                            @Name("property") String prop,
+                                                            @Name("config") Map<String, Object> config) {
+
+        Objects.requireNonNull(rootNode);
+        Objects.requireNonNull(terminalNode);
+        Objects.requireNonNull(prop);
+        Objects.requireNonNull(config);
+
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        TraversalConfig traversalConfig = TraversalConfig.of(config);
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.advancedTraverseGraph.ids", prop);
+        TraversalPath path;
+        try (Traversal traversal = Traversal.create(internalTx.kernelTransaction(), prop, traversalConfig)) {
+            long start = System.nanoTime();
+            path = traversal.traverse(rootNode.getId(), terminalNode.getId());
+            metrics.record(path, traversal.counters(), System.nanoTime() - start);
+        }
+
+        if (path.outcome.limit != null) {
+            return Stream.of(IdTraversalResult.of(Collections.emptyList(), Collections.emptyList(),
+                    traversalConfig.includeValues ? Collections.emptyList() : null, path.outcome.limit));
+        }
+        List<Long> nodeIds = path.routeNodeIds();
+        List<Object> values = null;
+        if (traversalConfig.includeValues) {
+            values = new ArrayList<>(nodeIds.size());
+            for (long nodeId : nodeIds) {
+                values.add(internalTx.newNodeEntity(nodeId).getProperty(prop, null));
             }
         }
-        if (nodeFound && !terminated) {
-            listOfRelationships.add(chosenChildRelationship);
-            mapOfNodes.put(String.valueOf(chosenChildNode.getId()), chosenChildNode);
-            processNode(chosenChildNode, terminalNode, property, listOfRelationships, mapOfNodes, maxDepth, nodeWhiteList, nodeBlackList, relationshipWhiteList, relationshipBlackList, level + 1);
-        }
-    }
-
-    private List<String> extractListFromConfig(Map<String, Object> config, String type, String list) {
-        if (!config.isEmpty() && config.containsKey(type)) {
-            Map<String, Object> map = (Map<String, Object>) config.get(type);
-            if (map.containsKey(list)) {
-                Object x = map.get(list);
-                if (x instanceof List) {
-                    return (List<String>) x;
-                } else {
-                    return Collections.singletonList((String) x);
-                }
-            } else {
-                return Collections.emptyList();
+        return Stream.of(IdTraversalResult.of(nodeIds, path.routeRelationshipIds(), values, null));
+    }
+
+    @Procedure(name = "custom.advancedTraverseGraph.stream")
+    @Description("Stream the path from root node to terminating node that traverses the path with highest values of property 'prop' as one row per hop; the greedy walk emits each hop as soon as it is chosen, and a route ended by config 'maxDepth', 'maxVisited' or 'timeoutMs' ends with a row naming that 'limit'")
+    public Stream<HopResult> advanceTraverseTreeStream(@Name("root") Node rootNode,
+                                                       @Name("terminal") Node terminalNode,
+                                                       @Name("property") String prop,
+                                                       @Name("config") Map<String, Object> config) {
+
+        Objects.requireNonNull(rootNode);
+        Objects.requireNonNull(terminalNode);
+        Objects.requireNonNull(prop);
+        Objects.requireNonNull(config);
+
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.advancedTraverseGraph.stream", prop);
+        long start = System.nanoTime();
+        Traversal traversal = Traversal.create(internalTx.kernelTransaction(), prop, TraversalConfig.of(config));
+        try {
+            Hops hops = traversal.hops(rootNode.getId(), terminalNode.getId());
+            HopSpliterator spliterator = new HopSpliterator(hops, internalTx, prop);
+            // the walk goes on while the rows are consumed, so the call is timed until the stream closes
+            return StreamSupport.stream(spliterator, false)
+                    .onClose(() -> {
+                        metrics.record(spliterator.walked(), traversal.counters(), System.nanoTime() - start);
+                        traversal.close();
+                    });
+        } catch (RuntimeException e) {
+            // the stream that would close the cursors was never returned
+            traversal.close();
+            throw e;
+        }
+    }
+
+    @Procedure(name = "custom.advancedTraverseGraph.batch")
+    @Description("Get, for each [root, terminal] pair, the path from root node to terminating node that traverses the path with highest values of property 'prop'; the config is parsed once for the whole batch and config 'concurrency' spreads the pairs over that many threads, at most one per processor")
+    public Stream<BatchTraversalResult> advanceTraverseTreeBatch(@Name("pairs") List<List<Node>> pairs,
+                                                                 @Name("property") String prop,
+                                                                 @Name("config") Map<String, Object> config) {
+
+        Objects.requireNonNull(pairs);
+        Objects.requireNonNull(prop);
+        Objects.requireNonNull(config);
+
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        TraversalConfig traversalConfig = TraversalConfig.of(config);
+        Node[][] nodePairs = new Node[pairs.size()][];
+        for (int index = 0; index < nodePairs.length; index++) {
+            List<Node> pair = pairs.get(index);
+            if (pair == null || pair.size() != 2 || pair.get(0) == null || pair.get(1) == null) {
+                throw new IllegalArgumentException("Pair at index " + index + " must be a list of a root and a terminal node");
             }
-        } else {
-            return Collections.emptyList();
+            nodePairs[index] = new Node[]{pair.get(0), pair.get(1)};
+        }
+
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.advancedTraverseGraph.batch", prop);
+        if (traversalConfig.concurrency > 1) {
+            long[] rootNodeIds = Arrays.stream(nodePairs).mapToLong(pair -> pair[0].getId()).toArray();
+            long[] terminalNodeIds = Arrays.stream(nodePairs).mapToLong(pair -> pair[1].getId()).toArray();
+            return ParallelTraversal.stream((GraphDatabaseAPI) db, internalTx.kernelTransaction(), prop, traversalConfig, rootNodeIds, terminalNodeIds, metrics)
+                    .map(completed -> {
+                        Node[] pair = nodePairs[completed.index];
+                        return BatchTraversalResult.of(completed.index, pair[0], pair[1], toTraversalResult(pair[0], completed.path, internalTx));
+                    });
+        }
+
+        Traversal traversal = Traversal.create(internalTx.kernelTransaction(), prop, traversalConfig);
+        try {
+            return IntStream.range(0, nodePairs.length)
+                    .mapToObj(index -> {
+                        Node[] pair = nodePairs[index];
+                        long start = System.nanoTime();
+                        TraversalPath path = traversal.traverse(pair[0].getId(), pair[1].getId());
+                        metrics.record(path, traversal.counters(), System.nanoTime() - start);
+                        return BatchTraversalResult.of(index, pair[0], pair[1], toTraversalResult(pair[0], path, internalTx));
+                    })
+                    .onClose(traversal::close);
+        } catch (RuntimeException e) {
+            traversal.close();
+            throw e;
+        }
+    }
+
+    @Procedure(name = "custom.advancedTraverseGraph.multi")
+    @Description("Get, for each root node and each node with config 'rootLabel', the path that traverses the path with highest values of property 'prop' until it reaches any of the terminal nodes or any node with config 'terminalLabel'; 'terminal' is the terminal reached, and config 'concurrency' spreads the roots over that many threads, at most one per processor")
+    public Stream<BatchTraversalResult> advanceTraverseTreeMulti(@Name("roots") List<Node> roots,
+                                                                 @Name("terminals") List<Node> terminals,
+                                                                 @Name("property") String prop,
+                                                                 @Name("config") Map<String, Object> config) {
+
+        Objects.requireNonNull(roots);
+        Objects.requireNonNull(terminals);
+        Objects.requireNonNull(prop);
+        Objects.requireNonNull(config);
+
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        TraversalConfig traversalConfig = TraversalConfig.of(config);
+        Map<Long, Node> rootNodes = new LinkedHashMap<>();
+        for (Node root : roots) {
+            rootNodes.putIfAbsent(Objects.requireNonNull(root).getId(), root);
+        }
+        if (traversalConfig.rootLabel != null) {
+            tx.findNodes(Label.label(traversalConfig.rootLabel)).forEachRemaining(root -> rootNodes.putIfAbsent(root.getId(), root));
+        }
+        LongHashSet terminalNodeIds = new LongHashSet();
+        for (Node terminal : terminals) {
+            terminalNodeIds.add(Objects.requireNonNull(terminal).getId());
+        }
+        if (traversalConfig.terminalLabel != null) {
+            tx.findNodes(Label.label(traversalConfig.terminalLabel)).forEachRemaining(terminal -> terminalNodeIds.add(terminal.getId()));
         }
+        if (terminalNodeIds.isEmpty()) {
+            throw new IllegalArgumentException("No terminal node is given nor has label '" + traversalConfig.terminalLabel + "'");
+        }
+        Node[] rootNodeArray = rootNodes.values().toArray(new Node[0]);
+
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.advancedTraverseGraph.multi", prop);
+        if (traversalConfig.concurrency > 1) {
+            long[] rootNodeIds = rootNodes.keySet().stream().mapToLong(Long::longValue).toArray();
+            return ParallelTraversal.stream((GraphDatabaseAPI) db, internalTx.kernelTransaction(), prop, traversalConfig, rootNodeIds, terminalNodeIds, metrics)
+                    .map(completed -> toMultiTraversalResult(completed.index, rootNodeArray[completed.index], completed.path, internalTx));
+        }
+
+        Traversal traversal = Traversal.create(internalTx.kernelTransaction(), prop, traversalConfig);
+        try {
+            return IntStream.range(0, rootNodeArray.length)
+                    .mapToObj(index -> {
+                        long start = System.nanoTime();
+                        TraversalPath path = traversal.traverse(rootNodeArray[index].getId(), terminalNodeIds);
+                        metrics.record(path, traversal.counters(), System.nanoTime() - start);
+                        return toMultiTraversalResult(index, rootNodeArray[index], path, internalTx);
+                    })
+                    .onClose(traversal::close);
+        } catch (RuntimeException e) {
+            traversal.close();
+            throw e;
+        }
+    }
+
+    @Procedure(name = "custom.advancedTraverseGraph.routes")
+    @Description("Stream the config 'k' (default 3) best loopless routes from root node to terminating node, best first, scored by the config 'aggregate' of property 'prop' as with algorithm 'optimal'; each row is streamed as soon as its route is chosen, and when config 'maxVisited' or 'timeoutMs' ends the search a last row names that 'limit'")
+    public Stream<RouteResult> advanceTraverseTreeRoutes(@Name("root") Node rootNode,
+                                                         @Name("terminal") Node terminalNode,
+                                                         @Name("property") String prop,
+                                                         @Name("config") Map<String, Object> config) {
+
+        Objects.requireNonNull(rootNode);
+        Objects.requireNonNull(terminalNode);
+        Objects.requireNonNull(prop);
+        Objects.requireNonNull(config);
+
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.advancedTraverseGraph.routes", prop);
+        long start = System.nanoTime();
+        AlternativeRoutes routes = new AlternativeRoutes(internalTx.kernelTransaction(), prop, TraversalConfig.of(config),
+                rootNode.getId(), terminalNode.getId());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(routes, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(route -> RouteResult.of(route.rank, Double.isNaN(route.value) ? null : route.value,
+                        toTraversalResult(rootNode, route.toPath(), internalTx)))
+                .onClose(() -> {
+                    metrics.record(routes.hops(), routes.counters(), System.nanoTime() - start);
+                    routes.close();
+                });
+    }
+
+    private static BatchTraversalResult toMultiTraversalResult(int index, Node rootNode, TraversalPath path, InternalTransaction internalTx) {
+        Node terminal = path.outcome == TraversalPath.Outcome.TERMINAL_REACHED
+                ? internalTx.newNodeEntity(path.nodeIds.getLast())
+                : null;
+        return BatchTraversalResult.of(index, rootNode, terminal, toTraversalResult(rootNode, path, internalTx));
+    }
+
+    @Procedure(name = "custom.buildBestChildIndex")
+    @Description("Rank the outgoing neighbours of every node by property 'prop', so greedy traversals on 'prop' take the best child from the ranking; commits drop the rankings they change and traversals load them again; an index estimated larger than config 'maxBytes' (default half of the heap) is refused")
+    public Stream<BestChildIndexResult> buildBestChildIndex(@Name("property") String prop,
+                                                            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+
+        Objects.requireNonNull(prop);
+        Objects.requireNonNull(config);
+
+        TraversalCaches caches = TraversalCaches.forDatabase(db.databaseName());
+        if (caches == null) {
+            throw new IllegalStateException("The best child index cannot be kept up to date, the traversal caches extension is not loaded");
+        }
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        if (internalTx.kernelTransaction().dataRead().transactionStateHasChanges()) {
+            throw new IllegalStateException("The best child index cannot be built in a transaction with uncommitted changes");
+        }
+        long maxBytes = TraversalConfig.of(config).maxBytes;
+        BestChildIndex index = new BestChildIndex(prop);
+        index.checkEstimate(internalTx.kernelTransaction(), maxBytes);
+        caches.startBuilding(index);
+        try {
+            index.build(internalTx.kernelTransaction(), maxBytes);
+        } catch (RuntimeException e) {
+            caches.abandon(index);
+            throw e;
+        }
+        caches.register(index);
+        return Stream.of(BestChildIndexResult.of(prop, index.size(), index.relationships(), index.estimatedBytes()));
+    }
+
+    @Procedure(name = "custom.dropBestChildIndex")
+    @Description("Drop the best child index of property 'prop', returning nothing when there is none")
+    public Stream<BestChildIndexResult> dropBestChildIndex(@Name("property") String prop) {
+
+        Objects.requireNonNull(prop);
+
+        TraversalCaches caches = TraversalCaches.forDatabase(db.databaseName());
+        BestChildIndex index = caches == null ? null : caches.dropBestChildIndex(prop);
+        if (index == null) {
+            return Stream.empty();
+        }
+        return Stream.of(BestChildIndexResult.of(prop, index.size(), index.relationships(), index.estimatedBytes()));
+    }
+
+    @Procedure(name = "custom.project")
+    @Description("Load all nodes and outgoing relationships, with property 'prop', into an in-memory projection named 'graph' for custom.project.traverseGraph; the 'nodes' and 'relationships' lists of the config apply to every walk over it, and the projection does not follow later writes; a projection estimated larger than config 'maxBytes' (default half of the heap) is refused")
+    public Stream<ProjectionResult> project(@Name("graph") String graph,
+                                            @Name("property") String prop,
+                                            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+
+        Objects.requireNonNull(graph);
+        Objects.requireNonNull(prop);
+        Objects.requireNonNull(config);
+
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        if (GraphProjection.get(db.databaseName(), graph) != null) {
+            throw new IllegalArgumentException("A projection named '" + graph + "' already exists");
+        }
+        GraphProjection projection = GraphProjection.load(internalTx.kernelTransaction(), graph, prop, TraversalConfig.of(config));
+        GraphProjection.register(db.databaseName(), projection);
+        return Stream.of(ProjectionResult.of(projection));
+    }
+
+    @Procedure(name = "custom.project.estimate")
+    @Description("Estimate the number of nodes and relationships and the heap in bytes of a projection, from the counts kept by the store and without loading anything; the lists of the config do not change the size of a projection")
+    public Stream<ProjectionEstimateResult> projectEstimate(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+
+        Objects.requireNonNull(config);
+
+        TraversalConfig.of(config);
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        GraphProjection.Estimate estimate = GraphProjection.estimate(internalTx.kernelTransaction());
+        return Stream.of(ProjectionEstimateResult.of(estimate.nodes, estimate.relationships, estimate.bytes));
+    }
+
+    @Procedure(name = "custom.project.list")
+    @Description("List the projections of this database")
+    public Stream<ProjectionResult> projectList() {
+        return GraphProjection.all(db.databaseName()).stream().map(ProjectionResult::of);
+    }
+
+    @Procedure(name = "custom.project.drop")
+    @Description("Drop the projection named 'graph', returning nothing when there is none")
+    public Stream<ProjectionResult> projectDrop(@Name("graph") String graph) {
+
+        Objects.requireNonNull(graph);
+
+        GraphProjection projection = GraphProjection.drop(db.databaseName(), graph);
+        return projection == null ? Stream.empty() : Stream.of(ProjectionResult.of(projection));
+    }
+
+    @Procedure(name = "custom.project.traverseGraph")
+    @Description("Get path from root node to terminating node that traverses the path with highest values of the property of the projection named 'graph', walking the projection greedily instead of the store; config options are those of custom.advancedTraverseGraph with algorithm 'greedy'")
+    public Stream<TraversalResult> projectTraverseGraph(@Name("graph") String graph,
+                                                        @Name("root") Node rootNode,
+                                                        @Name("terminal") Node terminalNode,
+                                                        @Name("config") Map<String, Object> config) {
+
+        Objects.requireNonNull(graph);
+        Objects.requireNonNull(rootNode);
+        Objects.requireNonNull(terminalNode);
+        Objects.requireNonNull(config);
+
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        GraphProjection projection = GraphProjection.require(db.databaseName(), graph);
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.project.traverseGraph", projection.property);
+        TraversalPath path;
+        try (Traversal traversal = new ProjectedTraversal(projection, internalTx.kernelTransaction().tokenRead(), TraversalConfig.of(config))) {
+            long start = System.nanoTime();
+            path = traversal.traverse(rootNode.getId(), terminalNode.getId());
+            metrics.record(path, traversal.counters(), System.nanoTime() - start);
+        }
+
+        return Stream.of(toTraversalResult(rootNode, path, internalTx));
+    }
+
+    @Procedure(name = "custom.project.traverseGraph.ids")
+    @Description("Get the ids of the nodes and relationships on the path custom.project.traverseGraph finds in the projection named 'graph', without reading anything from the store")
+    public Stream<IdTraversalResult> projectTraverseGraphIds(@Name("graph") String graph,
+                                                             @Name("root") Node rootNode,
+                                                             @Name("terminal") Node terminalNode,
+                                                             @Name("config") Map<String, Object> config) {
+
+        Objects.requireNonNull(graph);
+        Objects.requireNonNull(rootNode);
+        Objects.requireNonNull(terminalNode);
+        Objects.requireNonNull(config);
+
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        GraphProjection projection = GraphProjection.require(db.databaseName(), graph);
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.project.traverseGraph.ids", projection.property);
+        TraversalPath path;
+        try (Traversal traversal = new ProjectedTraversal(projection, internalTx.kernelTransaction().tokenRead(), TraversalConfig.of(config))) {
+            long start = System.nanoTime();
+            path = traversal.traverse(rootNode.getId(), terminalNode.getId());
+            metrics.record(path, traversal.counters(), System.nanoTime() - start);
+        }
+
+        if (path.outcome.limit != null) {
+            return Stream.of(IdTraversalResult.of(Collections.emptyList(), Collections.emptyList(), null, path.outcome.limit));
+        }
+        return Stream.of(IdTraversalResult.of(path.routeNodeIds(), path.routeRelationshipIds(), null, null));
+    }
+
+    @Procedure(name = "custom.traversalCacheStats")
+    @Description("Get the number of nodes with entries, the number of entries, hits and misses of the caches used by traversals with config 'cache: true' and of the best child indexes in this database")
+    public Stream<CacheStatsResult> traversalCacheStats() {
+        TraversalCaches caches = TraversalCaches.forDatabase(db.databaseName());
+        if (caches == null) {
+            return Stream.empty();
+        }
+        return Stream.concat(
+                Stream.of(
+                        CacheStatsResult.of("bestChild", caches.bestChildren.nodes(), caches.bestChildren.size(), caches.bestChildren.hits(), caches.bestChildren.misses()),
+                        CacheStatsResult.of("suffix", caches.suffixes.size(), caches.suffixes.entries(), caches.suffixes.hits(), caches.suffixes.misses())),
+                caches.bestChildIndexes().stream()
+                        .map(index -> CacheStatsResult.of("bestChildIndex:" + index.property(), index.size(), index.size(), index.hits(), index.misses())));
+    }
+
+    @Procedure(name = "custom.traversalStats")
+    @Description("Get, per procedure and property, the calls, hops, relationships read, relationships and neighbours rejected by the lists of the config, neighbours missing the property and the latency of the traversals in this database since the last reset; also published over JMX as customFunctions:type=TraversalStats")
+    public Stream<TraversalStatsResult> traversalStats() {
+        return TraversalMetrics.all(db.databaseName()).stream()
+                .sorted(Comparator.comparing(TraversalMetrics::getProcedure).thenComparing(TraversalMetrics::getProperty))
+                .map(TraversalStatsResult::of);
+    }
+
+    @Procedure(name = "custom.traversalStats.reset")
+    @Description("Reset the traversal stats of this database to zero")
+    public void traversalStatsReset() {
+        TraversalMetrics.resetAll(db.databaseName());
+    }
+
+    private static TraversalResult toTraversalResult(Node rootNode, TraversalPath path, InternalTransaction internalTx) {
+        List<Relationship> listOfRelationships = new ArrayList<>();
+        Map<String, Node> mapOfNodes = new HashMap<>();
+        if (path.outcome.limit == null) {
+            listOfRelationships.addAll(path.relationships(internalTx));
+            mapOfNodes.put(String.valueOf(rootNode.getId()), rootNode);
+            for (Node node : path.nodes(internalTx)) {
+                mapOfNodes.put(String.valueOf(node.getId()), node);
+            }
+        }
+        return TraversalResult.of(listOfRelationships, mapOfNodes, path.outcome.limit);
     }
 
     public static class TraversalResult {
         public List<Relationship> relationships;
         public Map<String, Node> nodes;
+        public String limit;
+        public Map<String, Object> profile;
 
-        private TraversalResult(List<Relationship> listOfRelationships, Map<String, Node> nodes) {
+        private TraversalResult(List<Relationship> listOfRelationships, Map<String, Node> nodes, String limit, Map<String, Object> profile) {
             this.relationships = listOfRelationships;
             this.nodes = nodes;
+            this.limit = limit;
+            this.profile = profile;
+        }
+
+        public static TraversalResult of(List<Relationship> listOfRelationships, Map<String, Node> nodes, String limit) {
+            return new TraversalResult(listOfRelationships, nodes, limit, null);
+        }
+
+        public static TraversalResult of(List<Relationship> listOfRelationships, Map<String, Node> nodes, String limit, Map<String, Object> profile) {
+            return new TraversalResult(listOfRelationships, nodes, limit, profile);
+        }
+    }
+
+    public static class IdTraversalResult {
+        public List<Long> nodeIds;
+        public List<Long> relationshipIds;
+        public List<Object> values;
+        public String limit;
+
+        private IdTraversalResult(List<Long> nodeIds, List<Long> relationshipIds, List<Object> values, String limit) {
+            this.nodeIds = nodeIds;
+            this.relationshipIds = relationshipIds;
+            this.values = values;
+            this.limit = limit;
+        }
+
+        public static IdTraversalResult of(List<Long> nodeIds, List<Long> relationshipIds, List<Object> values, String limit) {
+            return new IdTraversalResult(nodeIds, relationshipIds, values, limit);
+        }
+    }
+
+    public static class HopResult {
+        public long step;
+        public Relationship relationship;
+        public Node node;
+        public Object value;
+        public String limit;
+
+        private HopResult(long step, Relationship relationship, Node node, Object value, String limit) {
+            this.step = step;
+            this.relationship = relationship;
+            this.node = node;
+            this.value = value;
+            this.limit = limit;
+        }
+
+        public static HopResult of(long step, Relationship relationship, Node node, Object value, String limit) {
+            return new HopResult(step, relationship, node, value, limit);
+        }
+    }
+
+    public static class CacheStatsResult {
+        public String cache;
+        public long nodes;
+        public long entries;
+        public long hits;
+        public long misses;
+
+        private CacheStatsResult(String cache, long nodes, long entries, long hits, long misses) {
+            this.cache = cache;
+            this.nodes = nodes;
+            this.entries = entries;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public static CacheStatsResult of(String cache, long nodes, long entries, long hits, long misses) {
+            return new CacheStatsResult(cache, nodes, entries, hits, misses);
+        }
+    }
+
+    public static class BestChildIndexResult {
+        public String property;
+        public long nodes;
+        public long relationships;
+        public long bytes;
+
+        private BestChildIndexResult(String property, long nodes, long relationships, long bytes) {
+            this.property = property;
+            this.nodes = nodes;
+            this.relationships = relationships;
+            this.bytes = bytes;
+        }
+
+        public static BestChildIndexResult of(String property, long nodes, long relationships, long bytes) {
+            return new BestChildIndexResult(property, nodes, relationships, bytes);
+        }
+    }
+
+    public static class ProjectionResult {
+        public String graph;
+        public String property;
+        public long nodes;
+        public long relationships;
+        public long bytes;
+
+        private ProjectionResult(String graph, String property, long nodes, long relationships, long bytes) {
+            this.graph = graph;
+            this.property = property;
+            this.nodes = nodes;
+            this.relationships = relationships;
+            this.bytes = bytes;
+        }
+
+        static ProjectionResult of(GraphProjection projection) {
+            return new ProjectionResult(projection.name, projection.property, projection.nodeCount(),
+                    projection.relationshipCount(), projection.estimatedBytes());
+        }
+    }
+
+    public static class ProjectionEstimateResult {
+        public long nodes;
+        public long relationships;
+        public long bytes;
+
+        private ProjectionEstimateResult(long nodes, long relationships, long bytes) {
+            this.nodes = nodes;
+            this.relationships = relationships;
+            this.bytes = bytes;
+        }
+
+        public static ProjectionEstimateResult of(long nodes, long relationships, long bytes) {
+            return new ProjectionEstimateResult(nodes, relationships, bytes);
+        }
+    }
+
+    public static class TraversalStatsResult {
+        public String procedure;
+        public String property;
+        public long calls;
+        public long hops;
+        public long relationships;
+        public long rejections;
+        public long propertyMisses;
+        public long totalNanos;
+        public long p50Nanos;
+        public long p99Nanos;
+        public long maxNanos;
+
+        private TraversalStatsResult(TraversalMetrics metrics) {
+            this.procedure = metrics.getProcedure();
+            this.property = metrics.getProperty();
+            this.calls = metrics.getCalls();
+            this.hops = metrics.getHops();
+            this.relationships = metrics.getRelationships();
+            this.rejections = metrics.getRejections();
+            this.propertyMisses = metrics.getPropertyMisses();
+            this.totalNanos = metrics.getTotalNanos();
+            this.p50Nanos = metrics.getP50Nanos();
+            this.p99Nanos = metrics.getP99Nanos();
+            this.maxNanos = metrics.getMaxNanos();
+        }
+
+        static TraversalStatsResult of(TraversalMetrics metrics) {
+            return new TraversalStatsResult(metrics);
+        }
+    }
+
+    public static class RouteResult {
+        public long rank;
+        public Double score;
+        public List<Relationship> relationships;
+        public Map<String, Node> nodes;
+        public String limit;
+
+        private RouteResult(long rank, Double score, TraversalResult result) {
+            this.rank = rank;
+            this.score = score;
+            this.relationships = result.relationships;
+            this.nodes = result.nodes;
+            this.limit = result.limit;
+        }
+
+        public static RouteResult of(long rank, Double score, TraversalResult result) {
+            return new RouteResult(rank, score, result);
+        }
+    }
+
+    public static class BatchTraversalResult {
+        public long index;
+        public Node root;
+        public Node terminal;
+        public List<Relationship> relationships;
+        public Map<String, Node> nodes;
+        public String limit;
+
+        private BatchTraversalResult(long index, Node root, Node terminal, TraversalResult result) {
+            this.index = index;
+            this.root = root;
+            this.terminal = terminal;
+            this.relationships = result.relationships;
+            this.nodes = result.nodes;
+            this.limit = result.limit;
         }
 
-        public static TraversalResult of(List<Relationship> listOfRelationships, Map<String, Node> nodes) {
-            return new TraversalResult(listOfRelationships, nodes);
+        public static BatchTraversalResult of(long index, Node root, Node terminal, TraversalResult result) {
+            return new BatchTraversalResult(index, root, terminal, result);
         }
     }
 }
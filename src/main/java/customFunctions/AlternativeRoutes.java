@@ -0,0 +1,333 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.list.mutable.primitive.DoubleArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.StatementConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The {@code k} best loopless routes from root to terminal, best first, scored like {@link OptimalTraversal}.
+ * <p>
+ * The routes are found with Yen's algorithm. The first route is the best one. Each following route deviates
+ * from a route already found at one of its nodes, the spur node. It keeps the prefix of that route up to the spur
+ * node, and then follows the best route from the spur node that avoids:
+ * <ul>
+ *     <li>the nodes of the prefix;</li>
+ *     <li>the relationships by which the routes already found leave the same prefix.</li>
+ * </ul>
+ * The deviations are candidates, and the best candidate becomes the next route. Every route is handed out as soon
+ * as it is chosen, so the first rows stream before the later routes are searched.
+ * <p>
+ * The spur searches share what they read. The first time a node is expanded, its qualifying children and their
+ * values, and its relationships to the terminal, are kept in an {@link Adjacency}. Later searches expanding the
+ * node read the kept arrays instead of the store. Each spur search keeps its partial routes as {@link RouteLabels}, so
+ * a deviation is only dropped when a label of the same node dominates it with a route through no other nodes. The filters, {@code order}, {@code aggregate} and {@code maxDepth}
+ * apply as in the {@code optimal} algorithm. {@code maxVisited} and {@code timeoutMs} bound the expansions of all
+ * searches of the call together; when they end the call, a last route without hops names the limit.
+ */
+class AlternativeRoutes implements Iterator<AlternativeRoutes.Route>, AutoCloseable {
+
+    private static final int NO_LABEL = RouteLabels.NO_LABEL;
+    private static final Comparator<Route> CANDIDATE_ORDER = Comparator.comparingDouble((Route route) -> -route.score)
+            .thenComparingInt(Route::hops)
+            .thenComparingLong(route -> route.sequence);
+
+    private final TraversalConfig config;
+    private final NeighbourCursor children;
+    private final TraversalBudget budget;
+    private final long rootNodeId;
+    private final long terminalNodeId;
+    private final boolean lowestFirst;
+    private final LongObjectHashMap<Adjacency> adjacencies = new LongObjectHashMap<>();
+    private final List<Route> found = new ArrayList<>();
+    private final PriorityQueue<Route> candidates = new PriorityQueue<>(CANDIDATE_ORDER);
+    private final Set<LongArrayList> known = new HashSet<>();
+    private final LongHashSet blockedNodes = new LongHashSet();
+    private final LongHashSet blockedRelationships = new LongHashSet();
+    private final RouteLabels labels = new RouteLabels();
+    private long sequence;
+    private long hops;
+    private TraversalPath.Outcome exceeded;
+    private Route next;
+    private boolean done;
+
+    AlternativeRoutes(KernelTransaction ktx, String property, TraversalConfig config, long rootNodeId, long terminalNodeId) {
+        this.config = config;
+        this.children = new NeighbourCursor(ktx, property, config);
+        this.budget = new TraversalBudget(config);
+        this.rootNodeId = rootNodeId;
+        this.terminalNodeId = terminalNodeId;
+        this.lowestFirst = config.order == TraversalConfig.Order.MIN;
+        children.terminal(terminalNodeId);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Route next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Route route = next;
+        next = null;
+        return route;
+    }
+
+    /**
+     * The hops of the routes handed out so far.
+     */
+    long hops() {
+        return hops;
+    }
+
+    TraversalCounters counters() {
+        return children.counters();
+    }
+
+    private Route advance() {
+        if (found.size() < config.k) {
+            if (found.isEmpty()) {
+                budget.start();
+                offer(spur(null, 0));
+            } else {
+                Route previous = found.get(found.size() - 1);
+                for (int spurIndex = 0; spurIndex < previous.hops() && exceeded == null; spurIndex++) {
+                    block(previous, spurIndex);
+                    offer(spur(previous, spurIndex));
+                }
+            }
+            Route best = exceeded == null ? candidates.poll() : null;
+            if (best != null) {
+                best.rank = found.size() + 1;
+                found.add(best);
+                hops += best.hops();
+                return best;
+            }
+        }
+        done = true;
+        return exceeded == null ? null : Route.exceeded(found.size() + 1, rootNodeId, exceeded);
+    }
+
+    private void offer(Route candidate) {
+        if (candidate != null && known.add(LongArrayList.newListWith(candidate.relationshipIds))) {
+            candidates.add(candidate);
+        }
+    }
+
+    /**
+     * Blocks the nodes of the prefix before the spur node and the relationships by which the routes found so far
+     * leave the prefix.
+     */
+    private void block(Route previous, int spurIndex) {
+        blockedNodes.clear();
+        blockedRelationships.clear();
+        for (int i = 0; i < spurIndex; i++) {
+            blockedNodes.add(previous.nodeIds[i]);
+        }
+        for (Route route : found) {
+            if (route.hops() > spurIndex && Arrays.equals(route.relationshipIds, 0, spurIndex, previous.relationshipIds, 0, spurIndex)) {
+                blockedRelationships.add(route.relationshipIds[spurIndex]);
+            }
+        }
+    }
+
+    /**
+     * The best route keeping the prefix of the given route up to the spur node, or the best route of all when the
+     * given route is null; null when there is none or the budget ran out.
+     */
+    private Route spur(Route previous, int spurIndex) {
+        labels.clear();
+        long spurNodeId = previous == null ? rootNodeId : previous.nodeIds[spurIndex];
+        double spurScore = previous == null ? initialScore() : previous.scores[spurIndex];
+        int spurLabel = labels.add(spurNodeId, StatementConstants.NO_SUCH_RELATIONSHIP, NO_LABEL, spurIndex, spurScore);
+        labels.push(spurLabel);
+
+        int terminalLabel = NO_LABEL;
+        while (!labels.isEmpty()) {
+            int label = labels.pop();
+            if (terminalLabel != NO_LABEL && config.aggregate == TraversalConfig.Aggregate.MIN
+                    && labels.score(label) <= labels.score(terminalLabel)) {
+                break;
+            }
+            if (labels.depth(label) >= config.maxDepth) {
+                continue;
+            }
+            if (!budget.spend()) {
+                exceeded = budget.exceeded();
+                return null;
+            }
+            Adjacency adjacency = adjacency(labels.nodeId(label));
+            int depth = labels.depth(label) + 1;
+            for (int i = 0; i < adjacency.nodeIds.length; i++) {
+                long relationshipId = adjacency.relationshipIds[i];
+                long childNodeId = adjacency.nodeIds[i];
+                if (blockedRelationships.contains(relationshipId)) {
+                    continue;
+                }
+                if (childNodeId == terminalNodeId) {
+                    if (terminalLabel == NO_LABEL || labels.score(label) > labels.score(terminalLabel)) {
+                        terminalLabel = labels.add(childNodeId, relationshipId, label, depth, labels.score(label));
+                    }
+                    continue;
+                }
+                if (depth >= config.maxDepth || Double.isNaN(adjacency.values[i])
+                        || blockedNodes.contains(childNodeId) || labels.isOnRoute(label, childNodeId)) {
+                    continue;
+                }
+                double score = extend(labels.score(label), adjacency.values[i]);
+                if (!labels.dominated(label, childNodeId, depth, score)) {
+                    labels.push(labels.add(childNodeId, relationshipId, label, depth, score));
+                }
+            }
+        }
+        if (terminalLabel == NO_LABEL) {
+            return null;
+        }
+
+        int routeHops = labels.depth(terminalLabel);
+        long[] nodeIds = new long[routeHops + 1];
+        long[] relationshipIds = new long[routeHops];
+        double[] scores = new double[routeHops + 1];
+        if (previous != null) {
+            System.arraycopy(previous.nodeIds, 0, nodeIds, 0, spurIndex);
+            System.arraycopy(previous.relationshipIds, 0, relationshipIds, 0, spurIndex);
+            System.arraycopy(previous.scores, 0, scores, 0, spurIndex);
+        }
+        for (int label = terminalLabel; label != NO_LABEL; label = labels.parent(label)) {
+            int index = labels.depth(label);
+            nodeIds[index] = labels.nodeId(label);
+            scores[index] = labels.score(label);
+            if (label != spurLabel) {
+                relationshipIds[index - 1] = labels.relationshipId(label);
+            }
+        }
+        double score = scores[routeHops];
+        return new Route(nodeIds, relationshipIds, scores, score, lowestFirst ? -score : score, sequence++);
+    }
+
+    /**
+     * The qualifying children and the relationships to the terminal of the node, read from the store once per call.
+     */
+    private Adjacency adjacency(long nodeId) {
+        Adjacency adjacency = adjacencies.get(nodeId);
+        if (adjacency != null) {
+            return adjacency;
+        }
+        LongArrayList relationshipIds = new LongArrayList();
+        LongArrayList nodeIds = new LongArrayList();
+        DoubleArrayList values = new DoubleArrayList();
+        if (children.expand(nodeId)) {
+            while (children.next()) {
+                if (children.atTerminal()) {
+                    relationshipIds.add(children.relationshipId());
+                    nodeIds.add(children.neighbourNodeId());
+                    values.add(Double.NaN);
+                } else if (children.qualifies()) {
+                    relationshipIds.add(children.relationshipId());
+                    nodeIds.add(children.neighbourNodeId());
+                    values.add(children.value());
+                }
+            }
+        }
+        adjacency = new Adjacency(relationshipIds.toArray(), nodeIds.toArray(), values.toArray());
+        adjacencies.put(nodeId, adjacency);
+        return adjacency;
+    }
+
+    private double initialScore() {
+        return config.aggregate == TraversalConfig.Aggregate.MIN ? Double.POSITIVE_INFINITY : 0;
+    }
+
+    private double extend(double score, double value) {
+        return config.aggregate == TraversalConfig.Aggregate.MIN ? Math.min(score, value) : score + value;
+    }
+
+    @Override
+    public void close() {
+        children.close();
+    }
+
+    /**
+     * One route: its nodes from root to terminal, the relationships between them and the score of each prefix.
+     */
+    static final class Route {
+        final long[] nodeIds;
+        final long[] relationshipIds;
+        /** The score of the route up to each node, with the values negated for {@code order: 'min'}. */
+        private final double[] scores;
+        private final double score;
+        /** The aggregate of the values of the route, NaN for a route ended by a limit. */
+        final double value;
+        private final long sequence;
+        private final TraversalPath.Outcome outcome;
+        int rank;
+
+        private Route(long[] nodeIds, long[] relationshipIds, double[] scores, double score, double value, long sequence) {
+            this(nodeIds, relationshipIds, scores, score, value, sequence, TraversalPath.Outcome.TERMINAL_REACHED);
+        }
+
+        private Route(long[] nodeIds, long[] relationshipIds, double[] scores, double score, double value, long sequence,
+                      TraversalPath.Outcome outcome) {
+            this.nodeIds = nodeIds;
+            this.relationshipIds = relationshipIds;
+            this.scores = scores;
+            this.score = score;
+            this.value = value;
+            this.sequence = sequence;
+            this.outcome = outcome;
+        }
+
+        private static Route exceeded(int rank, long rootNodeId, TraversalPath.Outcome outcome) {
+            Route route = new Route(new long[]{rootNodeId}, new long[0], new double[1], Double.NaN, Double.NaN, -1, outcome);
+            route.rank = rank;
+            return route;
+        }
+
+        int hops() {
+            return relationshipIds.length;
+        }
+
+        TraversalPath toPath() {
+            TraversalPath path = new TraversalPath(nodeIds[0]);
+            for (int i = 0; i < relationshipIds.length; i++) {
+                path.add(relationshipIds[i], nodeIds[i + 1]);
+            }
+            path.outcome = outcome;
+            return path;
+        }
+    }
+
+    /**
+     * The relationships of one node kept for the spur searches: to its qualifying children, with their values, and
+     * to the terminal, with a NaN value.
+     */
+    private static final class Adjacency {
+        final long[] relationshipIds;
+        final long[] nodeIds;
+        final double[] values;
+
+        Adjacency(long[] relationshipIds, long[] nodeIds, double[] values) {
+            this.relationshipIds = relationshipIds;
+            this.nodeIds = nodeIds;
+            this.values = values;
+        }
+    }
+}
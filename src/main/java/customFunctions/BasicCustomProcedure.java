@@ -1,63 +1,73 @@
 package customFunctions;
 
-import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.StatementConstants;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Stream;
 
 public class BasicCustomProcedure {
 
+    @Context
+    public Transaction tx;
+
+    @Context
+    public GraphDatabaseService db;
+
     @Procedure(name = "custom.traverseGraph")
-    @Description("Get list of nodes from root node that traverse the path with highest values of property 'prop'")
-    public Stream<TraversalResult> traverseTree(@Name("root") Node rootNode, @Name("property") String prop) {
+    @Description("Get list of nodes from root node that traverse the path with highest values of property 'prop'; when config 'maxDepth', 'maxVisited' or 'timeoutMs' ends the walk, 'limit' names that option; config 'algorithm' only accepts 'greedy'; config 'profile: true' fills 'profile' with the relationships read per hop, the neighbours rejected per reason, the db hits and the elapsed nanoseconds, and bypasses the caches of config 'cache'")
+    public Stream<TraversalResult> traverseTree(@Name("root") Node rootNode,
+                                                @Name("property") String prop,
+                                                @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
 
         Objects.requireNonNull(rootNode);
         Objects.requireNonNull(prop);
+        Objects.requireNonNull(config);
 
-        List<Node> listOfNodes = new ArrayList<>();
-        processNode(rootNode, prop, listOfNodes);
-
-        return Stream.of(TraversalResult.of(listOfNodes));
-    }
-
-    private void processNode(Node node, String property, List<Node> nodes) {
-        boolean nodeFound = false;
-        Long currentMaxValue = Long.MIN_VALUE;
-        Node childNodeWithMaxValue = null;
-        Iterable<Relationship> relationships = node.getRelationships(Direction.OUTGOING);
-        for (Relationship relationship : relationships) {
-            Node childNode = relationship.getOtherNode(node);
-            if (childNode.hasProperty(property)) {
-                Long propertyValue = (Long) childNode.getProperty(property);
-                if (propertyValue > currentMaxValue) {
-                    childNodeWithMaxValue = childNode;
-                    currentMaxValue = propertyValue;
-                    nodeFound = true;
-                }
-            }
+        InternalTransaction internalTx = (InternalTransaction) tx;
+        TraversalMetrics metrics = TraversalMetrics.of(db.databaseName(), "custom.traverseGraph", prop);
+        TraversalPath path;
+        TraversalProfile profile;
+        TraversalConfig traversalConfig = TraversalConfig.of(config);
+        if (traversalConfig.algorithm != TraversalConfig.Algorithm.GREEDY) {
+            throw new IllegalArgumentException("Config option 'algorithm' must be 'greedy' for custom.traverseGraph, the other algorithms need a terminal node");
         }
-        if (nodeFound) {
-            nodes.add(childNodeWithMaxValue);
-            processNode(childNodeWithMaxValue, property, nodes);
+        try (Traversal traversal = Traversal.create(internalTx.kernelTransaction(), prop, traversalConfig)) {
+            long start = System.nanoTime();
+            path = traversal.traverse(rootNode.getId(), StatementConstants.NO_SUCH_NODE);
+            long nanos = System.nanoTime() - start;
+            profile = traversal.profile();
+            if (profile != null) {
+                profile.finish(traversal.counters(), nanos);
+            }
+            metrics.record(path, traversal.counters(), nanos);
         }
+
+        return Stream.of(TraversalResult.of(path.nodes(internalTx), path.outcome.limit, profile == null ? null : profile.toMap()));
     }
 
     public static class TraversalResult {
         public List<Node> nodes;
+        public String limit;
+        public Map<String, Object> profile;
 
-        private TraversalResult(List<Node> nodes) {
+        private TraversalResult(List<Node> nodes, String limit, Map<String, Object> profile) {
             this.nodes = nodes;
+            this.limit = limit;
+            this.profile = profile;
         }
 
-        public static TraversalResult of(List<Node> nodes) {
-            return new TraversalResult(nodes);
+        public static TraversalResult of(List<Node> nodes, String limit, Map<String, Object> profile) {
+            return new TraversalResult(nodes, limit, profile);
         }
     }
 }
@@ -0,0 +1,222 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.StatementConstants;
+
+import java.util.Arrays;
+
+/**
+ * Level-wise beam search keeping the {@code beamWidth} best partial routes of every depth.
+ * <p>
+ * Partial routes are scored by the {@code aggregate} of the values of their nodes, as with the {@code optimal}
+ * algorithm. Every partial route of the beam is extended by each of its qualifying children that is not on its route
+ * already, and the {@code beamWidth} best extensions, one per node, form the beam of the next depth. A branch that
+ * dead-ends simply drops out of the beam, so the search carries on with the next best routes instead of stopping.
+ * Each time a partial route has the terminal as a child, the route to the terminal is kept when it scores better
+ * than the best one found so far; the search ends when the beam is empty, or with {@code aggregate: 'min'} as soon
+ * as no partial route can still beat that route, and returns the best route found.
+ * <p>
+ * Only the routes that enter a beam, and the routes to the terminal that beat the best one so far, are kept in
+ * {@link RouteLabels}: at most {@code 2 * beamWidth} per depth searched, so memory is bounded by
+ * {@code beamWidth * maxDepth} routes, and the extensions of a depth by {@code beamWidth}. No set of visited nodes is
+ * kept; a route is only checked against its own nodes.
+ * Routes never visit a node twice and are at most {@code maxDepth} hops long. As in the greedy walk, the relationship
+ * to the terminal node is taken regardless of the filters.
+ */
+class BeamTraversal implements Traversal {
+
+    private static final int NO_LABEL = RouteLabels.NO_LABEL;
+
+    private final TraversalConfig config;
+    private final int beamWidth;
+    private final NeighbourCursor children;
+    private final RouteLabels labels = new RouteLabels();
+    private final TraversalBudget budget;
+    private final LongHashSet extendedNodeIds = new LongHashSet();
+    private int[] beam = new int[16];
+    private int beamSize;
+    private int[] extensionParents = new int[16];
+    private long[] extensionNodeIds = new long[16];
+    private long[] extensionRelationshipIds = new long[16];
+    private double[] extensionScores = new double[16];
+    private int extensionCount;
+
+    BeamTraversal(KernelTransaction ktx, String property, TraversalConfig config) {
+        this.config = config;
+        this.beamWidth = config.beamWidth;
+        this.budget = new TraversalBudget(config);
+        this.children = new NeighbourCursor(ktx, property, config);
+    }
+
+    @Override
+    public TraversalPath traverse(long rootNodeId, long terminalNodeId) {
+        if (terminalNodeId == StatementConstants.NO_SUCH_NODE) {
+            throw new IllegalArgumentException("The 'beam' algorithm needs a terminal node");
+        }
+        children.terminal(terminalNodeId);
+        return search(rootNodeId);
+    }
+
+    @Override
+    public TraversalPath traverse(long rootNodeId, LongSet terminalNodeIds) {
+        if (terminalNodeIds.isEmpty()) {
+            throw new IllegalArgumentException("The 'beam' algorithm needs a terminal node");
+        }
+        children.terminals(terminalNodeIds);
+        return search(rootNodeId);
+    }
+
+    private TraversalPath search(long rootNodeId) {
+        labels.clear();
+        budget.start();
+        if (config.maxDepth < 1) {
+            TraversalPath path = new TraversalPath(rootNodeId);
+            path.outcome = TraversalPath.Outcome.MAX_DEPTH_EXCEEDED;
+            return path;
+        }
+        beam[0] = labels.add(rootNodeId, StatementConstants.NO_SUCH_RELATIONSHIP, NO_LABEL, 0, initialScore());
+        beamSize = 1;
+
+        int terminalLabel = NO_LABEL;
+        boolean depthExceeded = false;
+        while (beamSize > 0) {
+            if (terminalLabel != NO_LABEL && config.aggregate == TraversalConfig.Aggregate.MIN
+                    && labels.score(beam[0]) <= labels.score(terminalLabel)) {
+                break;
+            }
+            extensionCount = 0;
+            extendedNodeIds.clear();
+            for (int member = 0; member < beamSize; member++) {
+                int label = beam[member];
+                if (!budget.spend()) {
+                    TraversalPath path = new TraversalPath(rootNodeId);
+                    path.outcome = budget.exceeded();
+                    return path;
+                }
+                if (!children.expand(labels.nodeId(label))) {
+                    continue;
+                }
+                int depth = labels.depth(label) + 1;
+                while (children.next()) {
+                    long childNodeId = children.neighbourNodeId();
+                    if (children.atTerminal()) {
+                        if (terminalLabel == NO_LABEL || labels.score(label) > labels.score(terminalLabel)) {
+                            terminalLabel = labels.add(childNodeId, children.relationshipId(), label, depth, labels.score(label));
+                        }
+                        continue;
+                    }
+                    if (depth >= config.maxDepth) {
+                        depthExceeded = true;
+                        continue;
+                    }
+                    if (labels.isOnRoute(label, childNodeId) || !children.qualifies()) {
+                        continue;
+                    }
+                    offer(label, childNodeId, children.relationshipId(), extend(labels.score(label), children.value()));
+                }
+            }
+            beamSize = 0;
+            for (int extension = 0; extension < extensionCount; extension++) {
+                int parent = extensionParents[extension];
+                beam[beamSize++] = labels.add(extensionNodeIds[extension], extensionRelationshipIds[extension], parent,
+                        labels.depth(parent) + 1, extensionScores[extension]);
+            }
+        }
+
+        TraversalPath path = new TraversalPath(rootNodeId);
+        if (terminalLabel == NO_LABEL) {
+            path.outcome = depthExceeded ? TraversalPath.Outcome.MAX_DEPTH_EXCEEDED : TraversalPath.Outcome.NO_CANDIDATE;
+            return path;
+        }
+        int hops = labels.depth(terminalLabel);
+        long[] relationshipIds = new long[hops];
+        long[] nodeIds = new long[hops];
+        for (int label = terminalLabel, i = hops - 1; i >= 0; label = labels.parent(label), i--) {
+            relationshipIds[i] = labels.relationshipId(label);
+            nodeIds[i] = labels.nodeId(label);
+        }
+        for (int i = 0; i < hops; i++) {
+            path.add(relationshipIds[i], nodeIds[i]);
+        }
+        path.outcome = TraversalPath.Outcome.TERMINAL_REACHED;
+        return path;
+    }
+
+    /**
+     * Keeps the extension of the label to the node among the {@code beamWidth} best extensions of this depth, sorted
+     * by score. A node already reached by a better extension of this depth is not kept twice.
+     */
+    private void offer(int parent, long nodeId, long relationshipId, double score) {
+        int i;
+        if (extendedNodeIds.contains(nodeId)) {
+            int existing = 0;
+            while (extensionNodeIds[existing] != nodeId) {
+                existing++;
+            }
+            if (extensionScores[existing] >= score) {
+                return;
+            }
+            i = existing;
+        } else if (extensionCount == beamWidth) {
+            if (score <= extensionScores[extensionCount - 1]) {
+                return;
+            }
+            extendedNodeIds.remove(extensionNodeIds[extensionCount - 1]);
+            i = extensionCount - 1;
+        } else {
+            ensureCapacity(extensionCount + 1);
+            i = extensionCount++;
+        }
+        extendedNodeIds.add(nodeId);
+        for (; i > 0 && extensionScores[i - 1] < score; i--) {
+            extensionParents[i] = extensionParents[i - 1];
+            extensionNodeIds[i] = extensionNodeIds[i - 1];
+            extensionRelationshipIds[i] = extensionRelationshipIds[i - 1];
+            extensionScores[i] = extensionScores[i - 1];
+        }
+        extensionParents[i] = parent;
+        extensionNodeIds[i] = nodeId;
+        extensionRelationshipIds[i] = relationshipId;
+        extensionScores[i] = score;
+    }
+
+    /**
+     * Grows the extension and beam arrays to hold the given number of routes, never beyond {@code beamWidth}.
+     */
+    private void ensureCapacity(int routes) {
+        if (routes <= beam.length) {
+            return;
+        }
+        int capacity = (int) Math.min((long) beam.length * 2, beamWidth);
+        beam = Arrays.copyOf(beam, capacity);
+        extensionParents = Arrays.copyOf(extensionParents, capacity);
+        extensionNodeIds = Arrays.copyOf(extensionNodeIds, capacity);
+        extensionRelationshipIds = Arrays.copyOf(extensionRelationshipIds, capacity);
+        extensionScores = Arrays.copyOf(extensionScores, capacity);
+    }
+
+    private double initialScore() {
+        return config.aggregate == TraversalConfig.Aggregate.MIN ? Double.POSITIVE_INFINITY : 0;
+    }
+
+    private double extend(double score, double value) {
+        return config.aggregate == TraversalConfig.Aggregate.MIN ? Math.min(score, value) : score + value;
+    }
+
+    @Override
+    public TraversalCounters counters() {
+        return children.counters();
+    }
+
+    @Override
+    public TraversalProfile profile() {
+        return children.profile();
+    }
+
+    @Override
+    public void close() {
+        children.close();
+    }
+}
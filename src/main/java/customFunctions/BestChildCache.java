@@ -0,0 +1,93 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The best child chosen by the greedy walk for a node, kept across calls for walks with {@code cache: true}.
+ * <p>
+ * A decision is stored per node under the {@link TraversalCaches.Signature} of the call, in a {@link NodeEntryCache}
+ * holding at most the capacity of decisions in all. See {@link TraversalCaches} for how decisions are invalidated.
+ */
+class BestChildCache {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final NodeEntryCache<Decision> decisions;
+
+    BestChildCache(int capacity) {
+        this.decisions = new NodeEntryCache<>(capacity, decision -> {
+        });
+    }
+
+    /**
+     * The stamp of the node, to read before its children; pass it back to {@link #put}.
+     */
+    long stamp(long nodeId) {
+        return decisions.stamp(nodeId);
+    }
+
+    boolean used() {
+        return decisions.used();
+    }
+
+    Decision get(long nodeId, TraversalCaches.Signature signature) {
+        Decision decision = decisions.get(nodeId, signature);
+        (decision == null ? misses : hits).increment();
+        return decision;
+    }
+
+    /**
+     * Stores the decision unless a commit changed the node since its stamp was read.
+     */
+    void put(long nodeId, TraversalCaches.Signature signature, Decision decision, long stamp) {
+        decisions.put(nodeId, signature, decision, stamp);
+    }
+
+    boolean isEmpty() {
+        return decisions.isEmpty();
+    }
+
+    /**
+     * The number of decisions.
+     */
+    int size() {
+        return decisions.size();
+    }
+
+    /**
+     * The number of nodes with decisions.
+     */
+    int nodes() {
+        return decisions.nodes();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Drops the decisions of the given nodes, or all decisions when null.
+     */
+    void invalidate(LongHashSet nodeIds) {
+        decisions.invalidate(nodeIds);
+    }
+
+    /**
+     * The best child of a node, or no child when {@link #nodeId} is {@link org.neo4j.kernel.api.StatementConstants#NO_SUCH_NODE}.
+     */
+    static final class Decision {
+        final long relationshipId;
+        final long nodeId;
+
+        Decision(long relationshipId, long nodeId) {
+            this.relationshipId = relationshipId;
+            this.nodeId = nodeId;
+        }
+    }
+}
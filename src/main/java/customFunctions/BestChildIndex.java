@@ -0,0 +1,424 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.list.mutable.primitive.BooleanArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.neo4j.token.api.TokenConstants;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The outgoing neighbours of each node ranked by one property, built by {@code custom.buildBestChildIndex} so the
+ * greedy walk can pick the best child without reading the property of every neighbour.
+ * <p>
+ * The {@link Children} of a node are kept in primitive arrays, best value first, neighbours with equal values in the
+ * order the relationships of the node are iterated, so the walk picks the same child as a scan. Integral values are
+ * kept and compared exactly as longs, as the scan compares them. Only the property is ranked: relationship types and
+ * labels are still checked against the filters of the call, going down the ranking until a child passes them.
+ * <p>
+ * Commits drop the children of every node whose ranking they may change, the same nodes {@link TraversalCaches}
+ * invalidates, and a walk reaching a node without children in the index loads them again. Nodes created after the
+ * index was built are loaded the same way, so the index stays complete without rebuilding it.
+ * <p>
+ * The children are kept by node id in primitive maps, one per lock stripe, so walks looking up nodes of different
+ * stripes do not wait for each other.
+ */
+class BestChildIndex {
+
+    private static final int STRIPES = 64;
+    /**
+     * Roughly the bytes of the key and reference of one node in a stripe, at the load factor of the maps.
+     */
+    private static final long ENTRY_BYTES = 24;
+    /**
+     * The build checks its transaction for termination every 1024 nodes.
+     */
+    private static final int CHECK_MASK = (1 << 10) - 1;
+
+    private final String property;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    @SuppressWarnings("unchecked")
+    private final LongObjectHashMap<Children>[] stripes = new LongObjectHashMap[STRIPES];
+
+    BestChildIndex(String property) {
+        this.property = property;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LongObjectHashMap<>();
+        }
+    }
+
+    private LongObjectHashMap<Children> stripe(long nodeId) {
+        return stripes[(int) ((nodeId ^ (nodeId >>> 32)) & (STRIPES - 1))];
+    }
+
+    String property() {
+        return property;
+    }
+
+    /**
+     * Changes with every commit that may change a ranking; pass it back to {@link #put}.
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * The ranked children of the node, or null when they are not in the index.
+     */
+    Children get(long nodeId) {
+        LongObjectHashMap<Children> stripe = stripe(nodeId);
+        Children children;
+        synchronized (stripe) {
+            children = stripe.get(nodeId);
+        }
+        (children == null ? misses : hits).increment();
+        return children;
+    }
+
+    /**
+     * Stores the children unless a commit happened since the given generation was read. A commit advances the
+     * generation before it drops any children, under the lock of their stripe, so children stored under that lock
+     * with the generation unchanged are dropped by the commit if it changes them.
+     */
+    void put(long nodeId, Children children, long generation) {
+        LongObjectHashMap<Children> stripe = stripe(nodeId);
+        synchronized (stripe) {
+            if (generation == this.generation.get()) {
+                stripe.put(nodeId, children);
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (LongObjectHashMap<Children> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of outgoing relationships of the nodes in the index.
+     */
+    long relationships() {
+        long relationships = 0;
+        for (LongObjectHashMap<Children> stripe : stripes) {
+            synchronized (stripe) {
+                for (Children children : stripe) {
+                    relationships += children.neighbourNodeIds.length;
+                }
+            }
+        }
+        return relationships;
+    }
+
+    /**
+     * Roughly the heap taken by the ranked children, in bytes.
+     */
+    long estimatedBytes() {
+        long bytes = 0;
+        for (LongObjectHashMap<Children> stripe : stripes) {
+            synchronized (stripe) {
+                for (Children children : stripe) {
+                    bytes += ENTRY_BYTES + children.estimatedBytes();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the children of the given nodes, or of all nodes when null.
+     */
+    void invalidate(LongHashSet nodeIds) {
+        generation.incrementAndGet();
+        if (nodeIds == null) {
+            for (LongObjectHashMap<Children> stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.clear();
+                }
+            }
+            return;
+        }
+        nodeIds.forEach(nodeId -> {
+            LongObjectHashMap<Children> stripe = stripe(nodeId);
+            synchronized (stripe) {
+                stripe.remove(nodeId);
+            }
+        });
+    }
+
+    /**
+     * Roughly the heap an index of every node takes, in bytes, from the counts the store keeps: per node its entry
+     * and arrays, per relationship a ranked child and a neighbour id.
+     */
+    static long estimateBytes(KernelTransaction ktx) {
+        Read read = ktx.dataRead();
+        long nodes = read.countsForNode(TokenRead.ANY_LABEL);
+        long relationships = read.countsForRelationship(TokenRead.ANY_LABEL, TokenRead.ANY_RELATIONSHIP_TYPE, TokenRead.ANY_LABEL);
+        return nodes * (ENTRY_BYTES + Children.ARRAYS_BYTES) + relationships * Children.RELATIONSHIP_BYTES;
+    }
+
+    /**
+     * Throws when the {@link #estimateBytes} of the index exceeds the given bound, checked before the index replaces
+     * the one of its property.
+     */
+    void checkEstimate(KernelTransaction ktx, long maxBytes) {
+        checkBound(estimateBytes(ktx), maxBytes);
+    }
+
+    /**
+     * Ranks the children of every node of the database, throws when the ranked children grow beyond the given bound.
+     */
+    void build(KernelTransaction ktx, long maxBytes) {
+        long bytes = 0;
+        int built = 0;
+        try (Loader loader = new Loader(ktx, property);
+             NodeCursor nodes = ktx.cursors().allocateNodeCursor(ktx.cursorContext())) {
+            ktx.dataRead().allNodesScan(nodes);
+            while (nodes.next()) {
+                if ((++built & CHECK_MASK) == 0) {
+                    ktx.assertOpen();
+                }
+                long generation = generation();
+                Children children = loader.load(nodes.nodeReference());
+                if (children != null) {
+                    bytes += ENTRY_BYTES + children.estimatedBytes();
+                    checkBound(bytes, maxBytes);
+                    put(nodes.nodeReference(), children, generation);
+                }
+            }
+        }
+    }
+
+    private void checkBound(long bytes, long maxBytes) {
+        if (bytes > maxBytes) {
+            throw new IllegalArgumentException("The best child index of '" + property + "' needs about " + bytes
+                    + " bytes, more than config option 'maxBytes' allows (" + maxBytes + ")");
+        }
+    }
+
+    /**
+     * The outgoing neighbours of one node with a number for the property, best value first, and the ids of all its
+     * outgoing neighbours sorted for lookup.
+     */
+    static final class Children {
+        private static final long ARRAYS_BYTES = 16 + 6 * 16;
+        private static final long CHILD_BYTES = 8 + 8 + 4 + 1 + 8;
+        private static final long RELATIONSHIP_BYTES = CHILD_BYTES + 8;
+
+        final long[] relationshipIds;
+        final long[] nodeIds;
+        final int[] types;
+        private final boolean[] integral;
+        /** The integral values, or the bits of the floating point ones. */
+        private final long[] values;
+        private final long[] neighbourNodeIds;
+
+        private Children(int ranked, long[] neighbourNodeIds) {
+            this.relationshipIds = new long[ranked];
+            this.nodeIds = new long[ranked];
+            this.types = new int[ranked];
+            this.integral = new boolean[ranked];
+            this.values = new long[ranked];
+            this.neighbourNodeIds = neighbourNodeIds;
+        }
+
+        int size() {
+            return nodeIds.length;
+        }
+
+        /**
+         * The number of outgoing relationships of the node, ranked or not.
+         */
+        int degree() {
+            return neighbourNodeIds.length;
+        }
+
+        /**
+         * Compares the values of two ranked children, integral values exactly.
+         */
+        int compare(int left, int right) {
+            return RankedValue.compare(integral[left], values[left], Double.longBitsToDouble(values[left]),
+                    integral[right], values[right], Double.longBitsToDouble(values[right]));
+        }
+
+        /**
+         * True when any outgoing relationship of the node, ranked or not, leads to the given node.
+         */
+        boolean linksTo(long nodeId) {
+            return Arrays.binarySearch(neighbourNodeIds, nodeId) >= 0;
+        }
+
+        /**
+         * True when any outgoing relationship of the node leads to a node of the set.
+         */
+        boolean linksToAny(LongSet nodeIds) {
+            for (long nodeId : neighbourNodeIds) {
+                if (nodeIds.contains(nodeId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long estimatedBytes() {
+            return ARRAYS_BYTES + nodeIds.length * CHILD_BYTES + neighbourNodeIds.length * 8L;
+        }
+    }
+
+    /**
+     * Reads and ranks the children of one node at a time through cursors allocated once.
+     */
+    static final class Loader implements AutoCloseable {
+        private static final RelationshipSelection OUTGOING = RelationshipSelection.selection(Direction.OUTGOING);
+
+        private final Read read;
+        private final boolean hasPropertyKey;
+        private final PropertySelection propertySelection;
+        private final NodeCursor nodeCursor;
+        private final NodeCursor neighbourNodeCursor;
+        private final RelationshipTraversalCursor relationshipCursor;
+        private final PropertyCursor propertyCursor;
+        private final RankedValue value = new RankedValue();
+
+        Loader(KernelTransaction ktx, String property) {
+            this.read = ktx.dataRead();
+            int propertyKey = ktx.tokenRead().propertyKey(property);
+            this.hasPropertyKey = propertyKey != TokenConstants.NO_TOKEN;
+            this.propertySelection = PropertySelection.selection(propertyKey);
+            this.nodeCursor = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+            this.neighbourNodeCursor = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+            this.relationshipCursor = ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext());
+            this.propertyCursor = ktx.cursors().allocatePropertyCursor(ktx.cursorContext(), ktx.memoryTracker());
+        }
+
+        /**
+         * The ranked children of the node, or null when the node does not exist.
+         */
+        Children load(long nodeId) {
+            read.singleNode(nodeId, nodeCursor);
+            if (!nodeCursor.next()) {
+                return null;
+            }
+            LongArrayList relationshipIds = new LongArrayList();
+            LongArrayList nodeIds = new LongArrayList();
+            IntArrayList types = new IntArrayList();
+            BooleanArrayList integral = new BooleanArrayList();
+            LongArrayList values = new LongArrayList();
+            LongArrayList neighbourNodeIds = new LongArrayList();
+            nodeCursor.relationships(relationshipCursor, OUTGOING);
+            while (relationshipCursor.next()) {
+                long neighbourNodeId = relationshipCursor.otherNodeReference();
+                neighbourNodeIds.add(neighbourNodeId);
+                if (readValue(neighbourNodeId)) {
+                    relationshipIds.add(relationshipCursor.relationshipReference());
+                    nodeIds.add(neighbourNodeId);
+                    types.add(relationshipCursor.type());
+                    integral.add(value.integral);
+                    values.add(value.integral ? value.integralValue : Double.doubleToRawLongBits(value.doubleValue));
+                }
+            }
+            int ranked = nodeIds.size();
+            int[] order = new int[ranked];
+            for (int i = 0; i < ranked; i++) {
+                order[i] = i;
+            }
+            sortBestFirst(order, integral, values);
+            Children children = new Children(ranked, neighbourNodeIds.sortThis().toArray());
+            for (int i = 0; i < ranked; i++) {
+                int from = order[i];
+                children.relationshipIds[i] = relationshipIds.get(from);
+                children.nodeIds[i] = nodeIds.get(from);
+                children.types[i] = types.get(from);
+                children.integral[i] = integral.get(from);
+                children.values[i] = values.get(from);
+            }
+            return children;
+        }
+
+        /**
+         * Sorts the indexes by their values, best first. A stable merge sort, so children with equal values keep the
+         * order of the scan.
+         */
+        private static void sortBestFirst(int[] order, BooleanArrayList integral, LongArrayList values) {
+            int[] from = order;
+            int[] to = new int[order.length];
+            for (int width = 1; width < order.length; width *= 2) {
+                for (int start = 0; start < order.length; start += 2 * width) {
+                    int middle = Math.min(start + width, order.length);
+                    int end = Math.min(start + 2 * width, order.length);
+                    int left = start;
+                    int right = middle;
+                    for (int i = start; i < end; i++) {
+                        if (left < middle && (right == end || compare(integral, values, from[left], from[right]) >= 0)) {
+                            to[i] = from[left++];
+                        } else {
+                            to[i] = from[right++];
+                        }
+                    }
+                }
+                int[] sorted = to;
+                to = from;
+                from = sorted;
+            }
+            if (from != order) {
+                System.arraycopy(from, 0, order, 0, order.length);
+            }
+        }
+
+        private static int compare(BooleanArrayList integral, LongArrayList values, int left, int right) {
+            return RankedValue.compare(integral.get(left), values.get(left), Double.longBitsToDouble(values.get(left)),
+                    integral.get(right), values.get(right), Double.longBitsToDouble(values.get(right)));
+        }
+
+        /**
+         * Reads the property of the node into {@link #value}, returns false when it has none that is a number.
+         */
+        private boolean readValue(long nodeId) {
+            if (!hasPropertyKey) {
+                return false;
+            }
+            read.singleNode(nodeId, neighbourNodeCursor);
+            if (!neighbourNodeCursor.next()) {
+                return false;
+            }
+            neighbourNodeCursor.properties(propertyCursor, propertySelection);
+            return propertyCursor.next() && value.set(propertyCursor.propertyValue());
+        }
+
+        @Override
+        public void close() {
+            nodeCursor.close();
+            neighbourNodeCursor.close();
+            relationshipCursor.close();
+            propertyCursor.close();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongDoubleHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.StatementConstants;
+
+/**
+ * Breadth-first search expanding outgoing relationships from the root and incoming relationships from the
+ * terminal at the same time, one level of the smaller frontier at a time, until the two meet.
+ * <p>
+ * The route found has the fewest hops of all qualifying routes. Among those, the one whose nodes carry the
+ * highest sum of the property wins: when a node is reached twice in the same level, it keeps the link with
+ * the higher sum. The filters apply exactly as in the forward walk: a relationship must pass the type filters
+ * unless it ends at the terminal, and every node between root and terminal must pass the label filters and
+ * have the property.
+ */
+class BidirectionalTraversal implements Traversal {
+
+    private static final int UNSEEN = -1;
+
+    private final TraversalConfig config;
+    private final NeighbourCursor neighbours;
+    private final Side forward = new Side(Direction.OUTGOING);
+    private final Side backward = new Side(Direction.INCOMING);
+    private final LongDoubleHashMap values = new LongDoubleHashMap();
+    private final TraversalBudget budget;
+    private long rootNodeId;
+    private long terminalNodeId;
+
+    BidirectionalTraversal(KernelTransaction ktx, String property, TraversalConfig config) {
+        if (config.score != null) {
+            // the backward side reaches each node before the relationship that leads to it from its parent
+            throw new IllegalArgumentException("The 'bidirectional' algorithm does not support config option 'score'");
+        }
+        this.config = config;
+        this.budget = new TraversalBudget(config);
+        this.neighbours = new NeighbourCursor(ktx, property, config);
+    }
+
+    @Override
+    public TraversalPath traverse(long rootNodeId, LongSet terminalNodeIds) {
+        throw new IllegalArgumentException("The 'bidirectional' algorithm needs a single terminal node");
+    }
+
+    @Override
+    public TraversalPath traverse(long rootNodeId, long terminalNodeId) {
+        if (terminalNodeId == StatementConstants.NO_SUCH_NODE) {
+            throw new IllegalArgumentException("The 'bidirectional' algorithm needs a terminal node");
+        }
+        this.rootNodeId = rootNodeId;
+        this.terminalNodeId = terminalNodeId;
+        neighbours.terminal(terminalNodeId);
+        values.clear();
+        forward.reset(rootNodeId);
+        backward.reset(terminalNodeId);
+        budget.start();
+
+        TraversalPath path = new TraversalPath(rootNodeId);
+        while (!forward.frontier.isEmpty() && !backward.frontier.isEmpty()) {
+            if (forward.level + backward.level >= config.maxDepth) {
+                path.outcome = TraversalPath.Outcome.MAX_DEPTH_EXCEEDED;
+                return path;
+            }
+            Side side = forward.frontier.size() <= backward.frontier.size() ? forward : backward;
+            Side other = side == forward ? backward : forward;
+            if (!expandLevel(side)) {
+                path.outcome = budget.exceeded();
+                return path;
+            }
+            long meetingNodeId = bestMeetingNode(side, other);
+            if (meetingNodeId != StatementConstants.NO_SUCH_NODE) {
+                addRoute(path, meetingNodeId);
+                path.outcome = TraversalPath.Outcome.TERMINAL_REACHED;
+                return path;
+            }
+        }
+        path.outcome = TraversalPath.Outcome.NO_CANDIDATE;
+        return path;
+    }
+
+    /**
+     * Expands every node of the side's frontier, returns false when the budget ran out first.
+     */
+    private boolean expandLevel(Side side) {
+        int depth = side.level + 1;
+        side.next.clear();
+        for (int i = 0; i < side.frontier.size(); i++) {
+            long nodeId = side.frontier.get(i);
+            if (!budget.spend()) {
+                return false;
+            }
+            if (!neighbours.expand(nodeId, side.direction)) {
+                continue;
+            }
+            while (neighbours.next()) {
+                long neighbourNodeId = neighbours.neighbourNodeId();
+                int knownDepth = side.depths.getIfAbsent(neighbourNodeId, UNSEEN);
+                if ((knownDepth != UNSEEN && knownDepth != depth) || !qualifies(side, nodeId, neighbourNodeId)) {
+                    continue;
+                }
+                double value = isEndpoint(neighbourNodeId) ? 0 : neighbours.value();
+                double score = side.scores.get(nodeId) + value;
+                if (knownDepth == UNSEEN) {
+                    side.depths.put(neighbourNodeId, depth);
+                    values.put(neighbourNodeId, value);
+                    side.next.add(neighbourNodeId);
+                } else if (score <= side.scores.get(neighbourNodeId)) {
+                    continue;
+                }
+                side.links.put(neighbourNodeId, nodeId);
+                side.relationships.put(neighbourNodeId, neighbours.relationshipId());
+                side.scores.put(neighbourNodeId, score);
+            }
+        }
+        LongArrayList expanded = side.frontier;
+        side.frontier = side.next;
+        side.next = expanded;
+        side.level = depth;
+        return true;
+    }
+
+    /**
+     * Applies the filters of the forward walk to a relationship found from either side.
+     */
+    private boolean qualifies(Side side, long nodeId, long neighbourNodeId) {
+        if (side == forward) {
+            return neighbourNodeId == terminalNodeId || neighbours.qualifies();
+        }
+        return (nodeId == terminalNodeId || neighbours.acceptsRelationship())
+                && (neighbourNodeId == rootNodeId || neighbours.qualifiesNeighbour());
+    }
+
+    private boolean isEndpoint(long nodeId) {
+        return nodeId == rootNodeId || nodeId == terminalNodeId;
+    }
+
+    /**
+     * Among the nodes just reached by one side and already reached by the other, the one on the shortest and
+     * then highest scoring route, or {@link StatementConstants#NO_SUCH_NODE} when the sides have not met.
+     */
+    private long bestMeetingNode(Side side, Side other) {
+        long bestNodeId = StatementConstants.NO_SUCH_NODE;
+        int bestHops = Integer.MAX_VALUE;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < side.frontier.size(); i++) {
+            long nodeId = side.frontier.get(i);
+            int otherDepth = other.depths.getIfAbsent(nodeId, UNSEEN);
+            if (otherDepth == UNSEEN) {
+                continue;
+            }
+            int hops = side.level + otherDepth;
+            double score = side.scores.get(nodeId) + other.scores.get(nodeId) - values.get(nodeId);
+            if (hops < bestHops || (hops == bestHops && score > bestScore)) {
+                bestNodeId = nodeId;
+                bestHops = hops;
+                bestScore = score;
+            }
+        }
+        return bestNodeId;
+    }
+
+    private void addRoute(TraversalPath path, long meetingNodeId) {
+        LongArrayList forwardNodeIds = new LongArrayList();
+        for (long nodeId = meetingNodeId; nodeId != rootNodeId; nodeId = forward.links.get(nodeId)) {
+            forwardNodeIds.add(nodeId);
+        }
+        for (int i = forwardNodeIds.size() - 1; i >= 0; i--) {
+            long nodeId = forwardNodeIds.get(i);
+            path.add(forward.relationships.get(nodeId), nodeId);
+        }
+        for (long nodeId = meetingNodeId; nodeId != terminalNodeId; ) {
+            long nextNodeId = backward.links.get(nodeId);
+            path.add(backward.relationships.get(nodeId), nextNodeId);
+            nodeId = nextNodeId;
+        }
+    }
+
+    @Override
+    public TraversalCounters counters() {
+        return neighbours.counters();
+    }
+
+    @Override
+    public TraversalProfile profile() {
+        return neighbours.profile();
+    }
+
+    @Override
+    public void close() {
+        neighbours.close();
+    }
+
+    /**
+     * The nodes reached from one end, each with the neighbour and relationship linking it back to that end,
+     * its depth and the sum of the values on its route to that end.
+     */
+    private static final class Side {
+        final Direction direction;
+        final LongLongHashMap links = new LongLongHashMap();
+        final LongLongHashMap relationships = new LongLongHashMap();
+        final LongIntHashMap depths = new LongIntHashMap();
+        final LongDoubleHashMap scores = new LongDoubleHashMap();
+        LongArrayList frontier = new LongArrayList();
+        LongArrayList next = new LongArrayList();
+        int level;
+
+        Side(Direction direction) {
+            this.direction = direction;
+        }
+
+        void reset(long startNodeId) {
+            links.clear();
+            relationships.clear();
+            depths.clear();
+            scores.clear();
+            frontier.clear();
+            level = 0;
+            depths.put(startNodeId, 0);
+            scores.put(startNodeId, 0);
+            frontier.add(startNodeId);
+        }
+    }
+}
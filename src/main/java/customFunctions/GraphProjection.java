@@ -0,0 +1,330 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.neo4j.token.api.TokenConstants;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A snapshot of the nodes, outgoing relationships and one property of a database, loaded by {@code custom.project}
+ * into primitive arrays so {@link ProjectedTraversal} can walk it without going through the transactional store.
+ * <p>
+ * Nodes are numbered densely in the order they are loaded. The relationships leaving node {@code i} are
+ * {@code offsets[i]} up to {@code offsets[i + 1]} of the relationship arrays, in the order the store iterates them
+ * (compressed sparse row). Each relationship keeps the index of its end node, its id and its type token; each node
+ * keeps its id and the value of the property: an integral value as a long, to be compared exactly, otherwise the bits
+ * of a double, NaN when it has no number. Labels are kept as one bitset
+ * of nodes per label token, so label lists are checked with bit tests.
+ * <p>
+ * Every node and relationship is loaded, whatever the lists of the config: a walk may start at any node and reaches
+ * its terminal through any relationship, as the walks of {@code custom.advancedTraverseGraph} do. The lists of the
+ * projection are kept and apply to the children of every walk over it, together with the lists of the walk.
+ * <p>
+ * The projection does not follow later writes; it is dropped with {@code custom.project.drop}, or when the database
+ * stops. Projections are registered per database by name.
+ */
+class GraphProjection {
+
+    private static final RelationshipSelection OUTGOING = RelationshipSelection.selection(Direction.OUTGOING);
+    private static final long NO_VALUE = Double.doubleToRawLongBits(Double.NaN);
+    private static final Map<String, Map<String, GraphProjection>> PROJECTIONS = new ConcurrentHashMap<>();
+    /**
+     * The load checks its size against {@code maxBytes}, and its transaction for termination, every 65536 nodes and
+     * every 65536 relationships.
+     */
+    private static final int CHECK_MASK = (1 << 16) - 1;
+
+    final String name;
+    final String property;
+    final long[] nodeIds;
+    /** The integral values of the nodes, or the bits of their floating point values, see {@link #hasValue}. */
+    final long[] values;
+    final BitSet integral;
+    final int[] offsets;
+    final int[] targets;
+    final long[] relationshipIds;
+    final int[] types;
+    private final TokenFilter filter;
+    private final LongIntHashMap indexByNodeId;
+    private final IntObjectHashMap<BitSet> nodesByLabel;
+
+    private GraphProjection(String name, String property, long[] nodeIds, long[] values, BitSet integral, int[] offsets,
+                            int[] targets, long[] relationshipIds, int[] types, TokenFilter filter,
+                            LongIntHashMap indexByNodeId, IntObjectHashMap<BitSet> nodesByLabel) {
+        this.name = name;
+        this.property = property;
+        this.nodeIds = nodeIds;
+        this.values = values;
+        this.integral = integral;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.relationshipIds = relationshipIds;
+        this.types = types;
+        this.filter = filter;
+        this.indexByNodeId = indexByNodeId;
+        this.nodesByLabel = nodesByLabel;
+    }
+
+    static GraphProjection get(String databaseName, String name) {
+        Map<String, GraphProjection> projections = PROJECTIONS.get(databaseName);
+        return projections == null ? null : projections.get(name);
+    }
+
+    /**
+     * The projection of the given name, throws when there is none.
+     */
+    static GraphProjection require(String databaseName, String name) {
+        GraphProjection projection = get(databaseName, name);
+        if (projection == null) {
+            throw new IllegalArgumentException("There is no projection named '" + name + "'");
+        }
+        return projection;
+    }
+
+    static Collection<GraphProjection> all(String databaseName) {
+        return PROJECTIONS.getOrDefault(databaseName, Map.of()).values();
+    }
+
+    /**
+     * Registers the projection under its name, throws when the name is taken.
+     */
+    static void register(String databaseName, GraphProjection projection) {
+        GraphProjection existing = PROJECTIONS.computeIfAbsent(databaseName, name -> new ConcurrentHashMap<>())
+                .putIfAbsent(projection.name, projection);
+        if (existing != null) {
+            throw new IllegalArgumentException("A projection named '" + projection.name + "' already exists");
+        }
+    }
+
+    /**
+     * Drops the projection of the given name, returns it or null when there is none.
+     */
+    static GraphProjection drop(String databaseName, String name) {
+        Map<String, GraphProjection> projections = PROJECTIONS.get(databaseName);
+        return projections == null ? null : projections.remove(name);
+    }
+
+    static void dropAll(String databaseName) {
+        PROJECTIONS.remove(databaseName);
+    }
+
+    int nodeCount() {
+        return nodeIds.length;
+    }
+
+    int relationshipCount() {
+        return targets.length;
+    }
+
+    /**
+     * True when the node has a number for the property.
+     */
+    boolean hasValue(int node) {
+        return integral.get(node) || !Double.isNaN(Double.longBitsToDouble(values[node]));
+    }
+
+    /**
+     * Compares the values of two nodes that have one, integral values exactly.
+     */
+    int compareValues(int left, int right) {
+        return RankedValue.compare(integral.get(left), values[left], Double.longBitsToDouble(values[left]),
+                integral.get(right), values[right], Double.longBitsToDouble(values[right]));
+    }
+
+    /**
+     * The index of the node in the projection, or -1 when it is not projected.
+     */
+    int indexOf(long nodeId) {
+        return indexByNodeId.getIfAbsent(nodeId, -1);
+    }
+
+    /**
+     * True when the relationship passes the type lists of the projection and of the walk.
+     */
+    boolean acceptsRelationship(int relationship, TokenFilter walkFilter) {
+        return filter.acceptsRelationship(types[relationship]) && walkFilter.acceptsRelationship(types[relationship]);
+    }
+
+    /**
+     * The projected nodes passing the label lists of the projection and of the walk, or null when all of them do.
+     */
+    BitSet acceptedNodes(TokenFilter walkFilter) {
+        BitSet accepted = acceptedNodesOf(filter);
+        BitSet acceptedByWalk = acceptedNodesOf(walkFilter);
+        if (accepted == null || acceptedByWalk == null) {
+            return accepted == null ? acceptedByWalk : accepted;
+        }
+        accepted.and(acceptedByWalk);
+        return accepted;
+    }
+
+    private BitSet acceptedNodesOf(TokenFilter filter) {
+        if (filter.acceptsAllNodes()) {
+            return null;
+        }
+        BitSet accepted = new BitSet(nodeIds.length);
+        if (filter.hasNodeWhiteList()) {
+            for (int label : filter.nodeWhiteList()) {
+                BitSet nodes = nodesByLabel.get(label);
+                if (nodes != null) {
+                    accepted.or(nodes);
+                }
+            }
+        } else {
+            accepted.set(0, nodeIds.length);
+        }
+        for (int label : filter.nodeBlackList()) {
+            BitSet nodes = nodesByLabel.get(label);
+            if (nodes != null) {
+                accepted.andNot(nodes);
+            }
+        }
+        return accepted;
+    }
+
+    long estimatedBytes() {
+        long labelBytes = 0;
+        for (BitSet nodes : nodesByLabel.values()) {
+            labelBytes += nodes.size() / 8;
+        }
+        return estimateBytes(nodeIds.length, targets.length, 0) + labelBytes;
+    }
+
+    /**
+     * Roughly the heap a projection of the given size takes, in bytes: per node its id, value, offset and entry in
+     * the id lookup, per relationship its end node, id and type, and per label a bitset of the nodes.
+     */
+    static long estimateBytes(long nodes, long relationships, long labels) {
+        return nodes * (8 + 8 + 4 + 24) + relationships * (4 + 8 + 4) + labels * (nodes / 8 + 64);
+    }
+
+    /**
+     * Loads all nodes and relationships, and keeps the label and relationship type lists of the config for the walks.
+     * Throws before loading when the {@link #estimate} exceeds the {@code maxBytes} of the config, and while loading
+     * when writes made in the meantime grow the projection beyond it. Relationships to nodes committed after the node
+     * scan are skipped, their end nodes are not projected.
+     */
+    static GraphProjection load(KernelTransaction ktx, String name, String property, TraversalConfig config) {
+        if (config.hasPropertyPredicates()) {
+            throw new IllegalArgumentException("Projections do not support 'where' predicates");
+        }
+        checkBound(name, estimate(ktx).bytes, config.maxBytes);
+        TokenRead tokenRead = ktx.tokenRead();
+        TokenFilter filter = TokenFilter.compile(config, tokenRead);
+        Read read = ktx.dataRead();
+        int propertyKey = tokenRead.propertyKey(property);
+        PropertySelection propertySelection = PropertySelection.selection(propertyKey);
+
+        LongArrayList nodeIds = new LongArrayList();
+        LongIntHashMap indexByNodeId = new LongIntHashMap();
+        IntObjectHashMap<BitSet> nodesByLabel = new IntObjectHashMap<>();
+        long[] values;
+        BitSet integral = new BitSet();
+        RankedValue value = new RankedValue();
+        IntArrayList offsets = new IntArrayList();
+        IntArrayList targets = new IntArrayList();
+        LongArrayList relationshipIds = new LongArrayList();
+        IntArrayList types = new IntArrayList();
+        try (NodeCursor nodeCursor = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+             RelationshipTraversalCursor relationshipCursor = ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext());
+             PropertyCursor propertyCursor = ktx.cursors().allocatePropertyCursor(ktx.cursorContext(), ktx.memoryTracker())) {
+            read.allNodesScan(nodeCursor);
+            while (nodeCursor.next()) {
+                int index = nodeIds.size();
+                nodeIds.add(nodeCursor.nodeReference());
+                indexByNodeId.put(nodeCursor.nodeReference(), index);
+                for (long label : nodeCursor.labels().all()) {
+                    nodesByLabel.getIfAbsentPut((int) label, BitSet::new).set(index);
+                }
+                if ((nodeIds.size() & CHECK_MASK) == 0) {
+                    ktx.assertOpen();
+                    checkBound(name, estimateBytes(nodeIds.size(), 0, nodesByLabel.size()), config.maxBytes);
+                }
+            }
+
+            values = new long[nodeIds.size()];
+            Arrays.fill(values, NO_VALUE);
+            for (int index = 0; index < nodeIds.size(); index++) {
+                offsets.add(targets.size());
+                read.singleNode(nodeIds.get(index), nodeCursor);
+                if (!nodeCursor.next()) {
+                    continue;
+                }
+                if (propertyKey != TokenConstants.NO_TOKEN && readValue(nodeCursor, propertyCursor, propertySelection, value)) {
+                    values[index] = value.integral ? value.integralValue : Double.doubleToRawLongBits(value.doubleValue);
+                    integral.set(index, value.integral);
+                }
+                nodeCursor.relationships(relationshipCursor, OUTGOING);
+                while (relationshipCursor.next()) {
+                    int target = indexByNodeId.getIfAbsent(relationshipCursor.otherNodeReference(), -1);
+                    if (target == -1) {
+                        // the end node was committed after the node scan, it is not projected
+                        continue;
+                    }
+                    targets.add(target);
+                    relationshipIds.add(relationshipCursor.relationshipReference());
+                    types.add(relationshipCursor.type());
+                    if ((targets.size() & CHECK_MASK) == 0) {
+                        ktx.assertOpen();
+                        checkBound(name, estimateBytes(nodeIds.size(), targets.size(), nodesByLabel.size()), config.maxBytes);
+                    }
+                }
+            }
+            offsets.add(targets.size());
+        }
+        return new GraphProjection(name, property, nodeIds.toArray(), values, integral, offsets.toArray(), targets.toArray(),
+                relationshipIds.toArray(), types.toArray(), filter, indexByNodeId, nodesByLabel);
+    }
+
+    private static void checkBound(String name, long bytes, long maxBytes) {
+        if (bytes > maxBytes) {
+            throw new IllegalArgumentException("Projection '" + name + "' needs about " + bytes
+                    + " bytes, more than config option 'maxBytes' allows (" + maxBytes + ")");
+        }
+    }
+
+    private static boolean readValue(NodeCursor nodeCursor, PropertyCursor propertyCursor, PropertySelection propertySelection,
+                                     RankedValue value) {
+        nodeCursor.properties(propertyCursor, propertySelection);
+        return propertyCursor.next() && value.set(propertyCursor.propertyValue());
+    }
+
+    /**
+     * The size of a projection, from the counts the store keeps. All nodes and relationships are loaded whatever the
+     * lists, so the estimate is exact up to the writes made in the meantime.
+     */
+    static Estimate estimate(KernelTransaction ktx) {
+        Read read = ktx.dataRead();
+        long nodes = read.countsForNode(TokenRead.ANY_LABEL);
+        long relationships = read.countsForRelationship(TokenRead.ANY_LABEL, TokenRead.ANY_RELATIONSHIP_TYPE, TokenRead.ANY_LABEL);
+        return new Estimate(nodes, relationships, estimateBytes(nodes, relationships, ktx.tokenRead().labelCount()));
+    }
+
+    static final class Estimate {
+        final long nodes;
+        final long relationships;
+        final long bytes;
+
+        Estimate(long nodes, long relationships, long bytes) {
+            this.nodes = nodes;
+            this.relationships = relationships;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.StatementConstants;
+
+/**
+ * Greedy walk shared by {@code custom.traverseGraph} and {@code custom.advancedTraverseGraph}.
+ * <p>
+ * At each hop the outgoing neighbour with the best value of the property is chosen, unless the
+ * terminal node, or any node of a set of terminals, is a neighbour, in which case the walk ends there. The walk is a plain loop over a
+ * single reused {@link Hop} frame and a single {@link NeighbourCursor}, so its stack footprint is constant
+ * and the path length is only bounded by {@code maxDepth}. Callers turn the resulting ids back into
+ * entities once the walk is done and must close the traversal to release its cursors.
+ * <p>
+ * Every node on the walk is recorded in a primitive visited set, so no node is expanded twice. When the
+ * best child has already been visited the walk either stops or falls back to the best unvisited child,
+ * depending on {@link TraversalConfig#onVisited}. The walk ends before expanding a node once
+ * its {@link TraversalBudget} is spent.
+ * <p>
+ * With {@code cache: true} the best child of a node is taken from the database's {@link BestChildCache} when
+ * it is known there, so a walk over a stable region does not scan the same children again. When the walk
+ * stops at visited nodes, it also takes the rest of its route from the {@link SuffixMemo} as soon as it reaches
+ * a node of a known route, and stores the route it found. The caches are bypassed while the calling transaction
+ * has uncommitted changes, which they must neither see nor store, and by profiled walks, which report the degree
+ * of every node they expand.
+ * <p>
+ * Once {@code custom.buildBestChildIndex} has built a {@link BestChildIndex} for the property, the children of a node
+ * are taken from it best first, and the first one passing the filters is the best child; only a node linked to the
+ * terminal is still scanned, to take the relationship a scan would. Like the caches, the index is bypassed while the
+ * calling transaction has uncommitted changes.
+ */
+class GreedyTraversal implements Traversal {
+
+    private final TraversalConfig config;
+    private final String property;
+    private final boolean lowestFirst;
+    private final boolean skipVisited;
+    private final NeighbourCursor children;
+    private final Hop hop = new Hop();
+    private final Walk walk = new Walk();
+    private final LongHashSet visited = new LongHashSet();
+    private final RankedValue bestValue = new RankedValue();
+    private final TraversalBudget budget;
+    private final KernelTransaction ktx;
+    private final TraversalCaches caches;
+    private final TraversalCaches databaseCaches;
+    private final String filterSignature;
+    private final LongArrayList walkedRelationshipIds = new LongArrayList();
+    private final LongArrayList walkedNodeIds = new LongArrayList();
+    private final LongArrayList expandedStamps = new LongArrayList();
+    private TraversalCaches.Signature signature;
+    private boolean useCache;
+    private boolean useMemo;
+    private LongSet terminalNodeIds;
+    private BestChildIndex index;
+    private BestChildIndex.Loader loader;
+    private long indexGeneration;
+
+    GreedyTraversal(KernelTransaction ktx, String property, TraversalConfig config) {
+        this.config = config;
+        this.property = property;
+        this.lowestFirst = config.order == TraversalConfig.Order.MIN;
+        this.budget = new TraversalBudget(config);
+        this.ktx = ktx;
+        this.databaseCaches = TraversalCaches.forDatabase(ktx.getDatabaseName());
+        this.caches = config.cache && !config.profile ? databaseCaches : null;
+        this.filterSignature = caches == null ? null : config.filterSignature(property);
+        this.skipVisited = config.onVisited == TraversalConfig.OnVisited.FALLBACK;
+        this.children = new NeighbourCursor(ktx, property, config);
+    }
+
+    @Override
+    public TraversalPath traverse(long rootNodeId, long terminalNodeId) {
+        return toPath(rootNodeId, hops(rootNodeId, terminalNodeId));
+    }
+
+    /**
+     * The caches hold the routes to one terminal, so a walk to a set of terminals neither reads nor stores them.
+     */
+    @Override
+    public TraversalPath traverse(long rootNodeId, LongSet terminalNodeIds) {
+        return toPath(rootNodeId, start(rootNodeId, StatementConstants.NO_SUCH_NODE, terminalNodeIds));
+    }
+
+    private static TraversalPath toPath(long rootNodeId, Hops hops) {
+        TraversalPath path = new TraversalPath(rootNodeId);
+        while (hops.next()) {
+            path.add(hops.relationshipId(), hops.nodeId());
+        }
+        path.outcome = hops.outcome();
+        return path;
+    }
+
+    /**
+     * Each hop is settled before the next node is expanded, so the walk hands out every hop as soon as it is chosen.
+     */
+    @Override
+    public Hops hops(long rootNodeId, long terminalNodeId) {
+        return start(rootNodeId, terminalNodeId, null);
+    }
+
+    private Hops start(long rootNodeId, long terminalNodeId, LongSet terminalNodeIds) {
+        visited.clear();
+        this.terminalNodeIds = terminalNodeIds;
+        if (terminalNodeIds == null) {
+            children.terminal(terminalNodeId);
+        } else {
+            children.terminals(terminalNodeIds);
+        }
+        visited.add(rootNodeId);
+        budget.start();
+        boolean committedState = !ktx.dataRead().transactionStateHasChanges();
+        useCache = caches != null && committedState && terminalNodeIds == null;
+        useMemo = useCache && !skipVisited;
+        if (useCache) {
+            signature = new TraversalCaches.Signature(terminalNodeId, filterSignature);
+        }
+        // the index ranks by the property alone and only checks type and label lists
+        index = databaseCaches != null && committedState && config.score == null && !config.hasPropertyPredicates()
+                ? databaseCaches.bestChildIndex(property)
+                : null;
+        if (index != null) {
+            indexGeneration = index.generation();
+        }
+        walk.reset(rootNodeId, terminalNodeId);
+        return walk;
+    }
+
+    /**
+     * Fills {@link #hop} with the next hop from the given node and returns false when there is none.
+     * <p>
+     * With the cache enabled the best child is looked up first. It is only stored when it was chosen among all
+     * children, which is not the case when a visited best child made the walk fall back to another one.
+     */
+    private boolean expand(long nodeId, long terminalNodeId) {
+        if (!useCache) {
+            return expand(nodeId, terminalNodeId, skipVisited);
+        }
+        long stamp = caches.bestChildren.stamp(nodeId);
+        BestChildCache.Decision decision = caches.bestChildren.get(nodeId, signature);
+        if (decision == null) {
+            expand(nodeId, terminalNodeId, false);
+            decision = new BestChildCache.Decision(hop.relationshipId, hop.nodeId);
+            caches.bestChildren.put(nodeId, signature, decision, stamp);
+        }
+        if (skipVisited && visited.contains(decision.nodeId)) {
+            return expand(nodeId, terminalNodeId, true);
+        }
+        hop.reset();
+        hop.set(decision.relationshipId, decision.nodeId);
+        hop.terminal = decision.nodeId == terminalNodeId;
+        return decision.nodeId != StatementConstants.NO_SUCH_NODE;
+    }
+
+    private boolean expand(long nodeId, long terminalNodeId, boolean skipVisited) {
+        if (index != null) {
+            BestChildIndex.Children ranked = rankedChildren(nodeId);
+            if (ranked == null) {
+                hop.reset();
+                return false;
+            }
+            if (terminalNodeIds == null ? !ranked.linksTo(terminalNodeId) : !ranked.linksToAny(terminalNodeIds)) {
+                children.expandedFromIndex(ranked.degree());
+                return expand(ranked, skipVisited);
+            }
+        }
+        hop.reset();
+        if (!children.expand(nodeId)) {
+            return false;
+        }
+        while (children.next()) {
+            long childNodeId = children.neighbourNodeId();
+            if (children.atTerminal()) {
+                hop.set(children.relationshipId(), childNodeId);
+                hop.terminal = true;
+                return true;
+            }
+            if (skipVisited && visited.contains(childNodeId)) {
+                continue;
+            }
+            if (children.qualifies() && (hop.nodeId == StatementConstants.NO_SUCH_NODE || children.beats(bestValue))) {
+                hop.set(children.relationshipId(), childNodeId);
+                bestValue.set(children.rankedValue());
+            }
+        }
+        return hop.nodeId != StatementConstants.NO_SUCH_NODE;
+    }
+
+    /**
+     * The children of the node from the index, loaded into it when they are not there yet, or null when the node does
+     * not exist.
+     */
+    private BestChildIndex.Children rankedChildren(long nodeId) {
+        BestChildIndex.Children ranked = index.get(nodeId);
+        if (ranked == null) {
+            if (loader == null) {
+                loader = new BestChildIndex.Loader(ktx, property);
+            }
+            ranked = loader.load(nodeId);
+            if (ranked != null) {
+                index.put(nodeId, ranked, indexGeneration);
+            }
+        }
+        return ranked;
+    }
+
+    /**
+     * Fills {@link #hop} with the best ranked child passing the filters. With {@code order: 'min'} the ranking is read
+     * from its end, and of the children sharing the lowest value the first one scanned is taken, as a scan would.
+     */
+    private boolean expand(BestChildIndex.Children ranked, boolean skipVisited) {
+        hop.reset();
+        int best = -1;
+        if (!lowestFirst) {
+            for (int i = 0; i < ranked.size() && best < 0; i++) {
+                if (isCandidate(ranked, i, skipVisited)) {
+                    best = i;
+                }
+            }
+        } else {
+            for (int i = ranked.size() - 1; i >= 0 && best < 0; i--) {
+                if (isCandidate(ranked, i, skipVisited)) {
+                    best = i;
+                    for (int j = i - 1; j >= 0 && ranked.compare(j, i) == 0; j--) {
+                        if (isCandidate(ranked, j, skipVisited)) {
+                            best = j;
+                        }
+                    }
+                }
+            }
+        }
+        if (best < 0) {
+            return false;
+        }
+        hop.set(ranked.relationshipIds[best], ranked.nodeIds[best]);
+        return true;
+    }
+
+    private boolean isCandidate(BestChildIndex.Children ranked, int i, boolean skipVisited) {
+        return !(skipVisited && visited.contains(ranked.nodeIds[i])) && children.accepts(ranked.types[i], ranked.nodeIds[i]);
+    }
+
+    @Override
+    public TraversalCounters counters() {
+        return children.counters();
+    }
+
+    @Override
+    public TraversalProfile profile() {
+        return children.profile();
+    }
+
+    @Override
+    public void close() {
+        children.close();
+        if (loader != null) {
+            loader.close();
+        }
+    }
+
+    /**
+     * The position of the walk between two hops, reused for every walk.
+     * <p>
+     * With the suffix memo in use, the walk records its hops until it reaches a node of a known route, then
+     * follows that route's segments instead of expanding nodes. Should a segment turn invalid on the way, it goes
+     * back to expanding nodes and the route is not stored.
+     */
+    private final class Walk implements Hops {
+        private long rootNodeId;
+        private long currentNodeId;
+        private long terminalNodeId;
+        private long level;
+        private TraversalPath.Outcome outcome;
+        private SuffixMemo.Segment joinedSegment;
+        private int joinedIndex;
+        private SuffixMemo.Segment segment;
+        private int index;
+        private boolean storable;
+
+        void reset(long rootNodeId, long terminalNodeId) {
+            this.rootNodeId = rootNodeId;
+            this.currentNodeId = rootNodeId;
+            this.terminalNodeId = terminalNodeId;
+            this.level = 0;
+            this.outcome = null;
+            this.joinedSegment = null;
+            this.segment = null;
+            this.storable = useMemo;
+            walkedRelationshipIds.clear();
+            walkedNodeIds.clear();
+            expandedStamps.clear();
+        }
+
+        @Override
+        public boolean next() {
+            if (outcome != null) {
+                return false;
+            }
+            if (useMemo && joinedSegment == null) {
+                SuffixMemo.Entry entry = caches.suffixes.get(currentNodeId, signature);
+                if (entry != null) {
+                    joinedSegment = segment = entry.segment;
+                    joinedIndex = index = entry.index;
+                }
+            }
+            if (++level > config.maxDepth) {
+                return end(TraversalPath.Outcome.MAX_DEPTH_EXCEEDED);
+            }
+            if (segment != null && !followSegment()) {
+                return false;
+            }
+            if (segment != null) {
+                hop.reset();
+                hop.set(segment.relationshipIds[index], segment.nodeIds[index]);
+                hop.terminal = hop.nodeId == terminalNodeId;
+                index++;
+            } else {
+                if (!budget.spend()) {
+                    return end(budget.exceeded());
+                }
+                if (storable && joinedSegment == null) {
+                    expandedStamps.add(caches.suffixes.stamp(currentNodeId));
+                }
+                if (!expand(currentNodeId, terminalNodeId)) {
+                    return end(TraversalPath.Outcome.NO_CANDIDATE);
+                }
+                if (storable && joinedSegment == null) {
+                    walkedRelationshipIds.add(hop.relationshipId);
+                    walkedNodeIds.add(hop.nodeId);
+                }
+            }
+            if (!visited.add(hop.nodeId)) {
+                return end(TraversalPath.Outcome.ALREADY_VISITED);
+            }
+            if (hop.terminal) {
+                end(TraversalPath.Outcome.TERMINAL_REACHED);
+            }
+            currentNodeId = hop.nodeId;
+            return true;
+        }
+
+        /**
+         * Moves to the segment holding the next hop of the joined route, returns false when the route ended there.
+         * Drops the route when the segment is no longer valid.
+         */
+        private boolean followSegment() {
+            while (index == segment.relationshipIds.length && segment.next != null && segment.valid) {
+                index = segment.nextIndex;
+                segment = segment.next;
+            }
+            if (!segment.valid) {
+                segment = null;
+                storable = false;
+                return true;
+            }
+            if (index == segment.relationshipIds.length) {
+                return end(segment.outcome);
+            }
+            return true;
+        }
+
+        /**
+         * Ends the walk, storing its route when it reached the terminal or a node without candidates.
+         */
+        private boolean end(TraversalPath.Outcome outcome) {
+            this.outcome = outcome;
+            boolean complete = outcome == TraversalPath.Outcome.TERMINAL_REACHED || outcome == TraversalPath.Outcome.NO_CANDIDATE;
+            if (storable && complete && !(joinedSegment != null && walkedNodeIds.isEmpty())) {
+                caches.suffixes.put(new SuffixMemo.Segment(rootNodeId, walkedRelationshipIds.toArray(), walkedNodeIds.toArray(),
+                        joinedSegment, joinedIndex, outcome), signature, expandedStamps.toArray());
+            }
+            return false;
+        }
+
+        @Override
+        public long relationshipId() {
+            return hop.relationshipId;
+        }
+
+        @Override
+        public long nodeId() {
+            return hop.nodeId;
+        }
+
+        @Override
+        public TraversalPath.Outcome outcome() {
+            return outcome;
+        }
+    }
+
+    /**
+     * The single frame reused for every hop of the walk.
+     */
+    private static final class Hop {
+        long relationshipId;
+        long nodeId;
+        boolean terminal;
+
+        void set(long relationshipId, long nodeId) {
+            this.relationshipId = relationshipId;
+            this.nodeId = nodeId;
+        }
+
+        void reset() {
+            relationshipId = StatementConstants.NO_SUCH_RELATIONSHIP;
+            nodeId = StatementConstants.NO_SUCH_NODE;
+            terminal = false;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package customFunctions;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Turns the {@link Hops} of a traversal into result rows one at a time, as the stream is consumed.
+ * <p>
+ * Entities are only created for the row being emitted, so a client reading the rows as they come holds the
+ * server to constant memory. A route ended by a config limit is followed by one last row without a hop that
+ * names the limit.
+ */
+class HopSpliterator extends Spliterators.AbstractSpliterator<AdvancedCustomProcedure.HopResult> {
+
+    private final Hops hops;
+    private final InternalTransaction tx;
+    private final String property;
+    private long step;
+    private long walked;
+    private boolean done;
+
+    HopSpliterator(Hops hops, InternalTransaction tx, String property) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.hops = hops;
+        this.tx = tx;
+        this.property = property;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super AdvancedCustomProcedure.HopResult> action) {
+        if (done) {
+            return false;
+        }
+        step++;
+        if (hops.next()) {
+            walked++;
+            Node node = tx.newNodeEntity(hops.nodeId());
+            action.accept(AdvancedCustomProcedure.HopResult.of(step, tx.newRelationshipEntity(hops.relationshipId()),
+                    node, node.getProperty(property, null), null));
+            return true;
+        }
+        done = true;
+        String limit = hops.outcome().limit;
+        if (limit == null) {
+            return false;
+        }
+        action.accept(AdvancedCustomProcedure.HopResult.of(step, null, null, null, limit));
+        return true;
+    }
+
+    /**
+     * The hops emitted so far.
+     */
+    long walked() {
+        return walked;
+    }
+}
@@ -0,0 +1,50 @@
+package customFunctions;
+
+/**
+ * The hops of a route, handed out one at a time in route order.
+ * <p>
+ * Only the ids of the current hop are held, so a caller turning each hop into output as it arrives needs
+ * constant memory however long the route is.
+ */
+interface Hops {
+
+    /**
+     * Moves to the next hop, returns false once the route has ended and {@link #outcome} tells why.
+     */
+    boolean next();
+
+    long relationshipId();
+
+    long nodeId();
+
+    TraversalPath.Outcome outcome();
+
+    /**
+     * The hops of a route that has already been searched.
+     */
+    static Hops of(TraversalPath path) {
+        return new Hops() {
+            private int index = -1;
+
+            @Override
+            public boolean next() {
+                return ++index < path.nodeIds.size();
+            }
+
+            @Override
+            public long relationshipId() {
+                return path.relationshipIds.get(index);
+            }
+
+            @Override
+            public long nodeId() {
+                return path.nodeIds.get(index);
+            }
+
+            @Override
+            public TraversalPath.Outcome outcome() {
+                return path.outcome;
+            }
+        };
+    }
+}
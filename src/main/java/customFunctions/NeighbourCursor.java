@@ -0,0 +1,530 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.StatementConstants;
+import org.neo4j.storageengine.api.Degrees;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.neo4j.token.api.TokenConstants;
+import org.neo4j.values.storable.NumberValue;
+import org.neo4j.values.storable.Value;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Iterates the outgoing or incoming relationships of one node at a time and reads the neighbour behind each of them.
+ * <p>
+ * The kernel cursors are allocated once and repositioned for every node, relationship and property, so
+ * walking the graph through a neighbour cursor creates no entity wrappers. Label and relationship type lists
+ * are compiled into a {@link TokenFilter} up front, so filtering a relationship costs a few bit tests.
+ * <p>
+ * On a dense node with a relationship type list, the degrees stored per type tell how many relationships the list
+ * rejects. When there are any, only the accepted types are iterated, through a type-limited selection that skips
+ * the groups of the others. The relationship to the terminal node is taken regardless of its type, so the cursor
+ * then needs the parents linked to the terminal by rejected types. It collects them once per terminal, from its
+ * incoming relationships, but only when there are fewer of those than relationships skipped on the node; otherwise
+ * it iterates all relationships of the node as on sparse nodes.
+ * <p>
+ * The property of a neighbour is read once, through a single-key property selection, into a {@link RankedValue}:
+ * the greedy walk compares integral values exactly as longs, while the searches adding values up read them as
+ * doubles. A neighbour whose value is not a number does not qualify.
+ * With config {@code score}, the neighbour is ranked by the {@link ScoreExpression} instead: the properties it reads
+ * from the neighbour and from the relationship are each read in one pass through a selection of their keys.
+ * <p>
+ * The {@code where} predicates of the config are tested before a neighbour is ranked, cheapest first: those of the
+ * relationship right after its type, on the relationship already under the cursor, then those of the neighbour after
+ * its labels, all in one {@link PropertyFilter} pass. A predicate on the ranked property itself is tested on the value
+ * read for the ranking.
+ */
+class NeighbourCursor implements AutoCloseable {
+
+    private static final RelationshipSelection OUTGOING = RelationshipSelection.selection(Direction.OUTGOING);
+    private static final RelationshipSelection INCOMING = RelationshipSelection.selection(Direction.INCOMING);
+
+    private final Read read;
+    private final TokenFilter filter;
+    private final boolean acceptsAllNodes;
+    private final boolean hasPropertyKey;
+    private final PropertySelection propertySelection;
+    private final NodeCursor nodeCursor;
+    private final NodeCursor neighbourNodeCursor;
+    private final RelationshipTraversalCursor relationshipCursor;
+    private final PropertyCursor propertyCursor;
+    private final boolean lowestFirst;
+    private final boolean filtersRelationships;
+    private final TraversalCounters counters = new TraversalCounters();
+    private final TraversalProfile profile;
+    private final ScoreExpression score;
+    private final PropertyFilter relationshipPropertyFilter;
+    private final PropertyFilter nodePropertyFilter;
+    private final PropertyPredicate rankedPropertyPredicate;
+    private final int[] nodeScoreKeys;
+    private final int[] relationshipScoreKeys;
+    private final PropertySelection nodeScoreSelection;
+    private final PropertySelection relationshipScoreSelection;
+    private final double[] nodeValues;
+    private final double[] relationshipValues;
+    private final RankedValue ranked = new RankedValue();
+    private double value;
+    private long terminalNodeId = StatementConstants.NO_SUCH_NODE;
+    private LongSet terminalNodeIds;
+    private LongLongHashMap terminalParents;
+    private int terminalRejectedDegree = -1;
+    private long pendingTerminalRelationshipId = StatementConstants.NO_SUCH_RELATIONSHIP;
+    private long terminalRelationshipId = StatementConstants.NO_SUCH_RELATIONSHIP;
+
+    NeighbourCursor(KernelTransaction ktx, String property, TraversalConfig config) {
+        this.read = ktx.dataRead();
+        this.filter = TokenFilter.compile(config, ktx.tokenRead());
+        this.acceptsAllNodes = filter.acceptsAllNodes();
+        this.filtersRelationships = filter.filtersRelationships();
+        int propertyKey = ktx.tokenRead().propertyKey(property);
+        this.hasPropertyKey = propertyKey != TokenConstants.NO_TOKEN;
+        this.propertySelection = PropertySelection.selection(propertyKey);
+        this.lowestFirst = config.order == TraversalConfig.Order.MIN;
+        this.nodeCursor = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+        this.neighbourNodeCursor = ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+        this.relationshipCursor = ktx.cursors().allocateRelationshipTraversalCursor(ktx.cursorContext());
+        this.propertyCursor = ktx.cursors().allocatePropertyCursor(ktx.cursorContext(), ktx.memoryTracker());
+        this.profile = config.profile ? new TraversalProfile() : null;
+        this.score = config.score;
+        this.relationshipPropertyFilter = PropertyFilter.compile(config.relationshipPredicates, ktx.tokenRead());
+        // a predicate on the ranked property is tested on the value read for the ranking, without another read
+        this.rankedPropertyPredicate = score == null
+                ? config.nodePredicates.stream().filter(predicate -> predicate.property.equals(property)).findFirst().orElse(null)
+                : null;
+        this.nodePropertyFilter = PropertyFilter.compile(config.nodePredicates.stream()
+                .filter(predicate -> predicate != rankedPropertyPredicate)
+                .collect(Collectors.toList()), ktx.tokenRead());
+        this.nodeScoreKeys = score == null ? new int[0] : propertyKeys(ktx.tokenRead(), score.nodeProperties());
+        this.relationshipScoreKeys = score == null ? new int[0] : propertyKeys(ktx.tokenRead(), score.relationshipProperties());
+        this.nodeScoreSelection = selection(nodeScoreKeys);
+        this.relationshipScoreSelection = selection(relationshipScoreKeys);
+        this.nodeValues = new double[nodeScoreKeys.length];
+        this.relationshipValues = new double[relationshipScoreKeys.length];
+        if (profile != null) {
+            nodeCursor.setTracer(profile);
+            neighbourNodeCursor.setTracer(profile);
+            relationshipCursor.setTracer(profile);
+            propertyCursor.setTracer(profile);
+        }
+    }
+
+    /**
+     * Sets the node whose relationships are taken regardless of the type lists, or {@link StatementConstants#NO_SUCH_NODE}.
+     */
+    void terminal(long terminalNodeId) {
+        this.terminalNodeIds = null;
+        if (terminalNodeId != this.terminalNodeId) {
+            this.terminalNodeId = terminalNodeId;
+            this.terminalParents = null;
+            this.terminalRejectedDegree = -1;
+        }
+    }
+
+    /**
+     * Sets the nodes whose relationships are taken regardless of the type lists, any of which ends the route. Dense
+     * nodes are then expanded with all their relationships, as the parents of a whole set are not collected.
+     */
+    void terminals(LongSet terminalNodeIds) {
+        terminal(StatementConstants.NO_SUCH_NODE);
+        this.terminalNodeIds = terminalNodeIds;
+    }
+
+    /**
+     * True when the current neighbour is the terminal node or one of the terminal nodes, a single set lookup.
+     */
+    boolean atTerminal() {
+        long neighbourNodeId = neighbourNodeId();
+        return neighbourNodeId == terminalNodeId || (terminalNodeIds != null && terminalNodeIds.contains(neighbourNodeId));
+    }
+
+    /**
+     * Positions the cursor before the first outgoing relationship of the node, returns false when the node does not exist.
+     */
+    boolean expand(long nodeId) {
+        return expand(nodeId, Direction.OUTGOING);
+    }
+
+    /**
+     * Positions the cursor before the first relationship of the node in the given direction, returns false when the
+     * node does not exist. Relationships of rejected types may be left out, but never one to the terminal node.
+     */
+    boolean expand(long nodeId, Direction direction) {
+        pendingTerminalRelationshipId = StatementConstants.NO_SUCH_RELATIONSHIP;
+        terminalRelationshipId = StatementConstants.NO_SUCH_RELATIONSHIP;
+        if (profile != null) {
+            profile.expanding(counters.relationships);
+        }
+        read.singleNode(nodeId, nodeCursor);
+        if (!nodeCursor.next()) {
+            return false;
+        }
+        RelationshipSelection all = direction == Direction.INCOMING ? INCOMING : OUTGOING;
+        RelationshipSelection selection = filtersRelationships && nodeCursor.supportsFastDegreeLookup()
+                ? denseSelection(nodeId, direction, all)
+                : all;
+        nodeCursor.relationships(relationshipCursor, selection);
+        return true;
+    }
+
+    /**
+     * The accepted types of the dense node under the cursor, or all relationships when that skips nothing or
+     * would miss a relationship to the terminal.
+     */
+    private RelationshipSelection denseSelection(long nodeId, Direction direction, RelationshipSelection all) {
+        Degrees degrees = nodeCursor.degrees(all);
+        int[] types = degrees.types();
+        int[] acceptedTypes = new int[types.length];
+        int accepted = 0;
+        int skipped = 0;
+        for (int type : types) {
+            int degree = degrees.degree(type, direction);
+            if (degree == 0) {
+                continue;
+            }
+            if (filter.acceptsRelationship(type)) {
+                acceptedTypes[accepted++] = type;
+            } else {
+                skipped += degree;
+            }
+        }
+        if (skipped == 0 || terminalNodeIds != null) {
+            return all;
+        }
+        if (terminalNodeId != StatementConstants.NO_SUCH_NODE) {
+            if (direction == Direction.INCOMING ? nodeId == terminalNodeId : !collectTerminalParents(skipped)) {
+                return all;
+            }
+            if (direction == Direction.OUTGOING) {
+                pendingTerminalRelationshipId = terminalParents.getIfAbsent(nodeId, StatementConstants.NO_SUCH_RELATIONSHIP);
+            }
+        }
+        return accepted == 0
+                ? RelationshipSelection.NO_RELATIONSHIPS
+                : RelationshipSelection.selection(Arrays.copyOf(acceptedTypes, accepted), direction);
+    }
+
+    /**
+     * Collects, once per terminal, the parents linked to the terminal by a rejected type, unless the terminal has more
+     * such relationships than the given number a type-limited expansion would skip. Returns true when they are collected.
+     */
+    private boolean collectTerminalParents(int skipped) {
+        if (terminalParents != null) {
+            return true;
+        }
+        read.singleNode(terminalNodeId, neighbourNodeCursor);
+        if (!neighbourNodeCursor.next()) {
+            terminalParents = new LongLongHashMap();
+            return true;
+        }
+        if (terminalRejectedDegree < 0) {
+            terminalRejectedDegree = rejectedIncomingDegree(neighbourNodeCursor);
+        }
+        if (terminalRejectedDegree > skipped) {
+            return false;
+        }
+        terminalParents = new LongLongHashMap();
+        neighbourNodeCursor.relationships(relationshipCursor, INCOMING);
+        while (relationshipCursor.next()) {
+            if (!filter.acceptsRelationship(relationshipCursor.type())) {
+                terminalParents.getIfAbsentPut(relationshipCursor.otherNodeReference(), relationshipCursor.relationshipReference());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The number of incoming relationships of rejected types, counted from the stored degrees on a dense node and
+     * bounded by all incoming relationships on a sparse one.
+     */
+    private int rejectedIncomingDegree(NodeCursor node) {
+        if (!node.supportsFastDegreeLookup()) {
+            return node.degree(INCOMING);
+        }
+        Degrees degrees = node.degrees(INCOMING);
+        int rejected = 0;
+        for (int type : degrees.types()) {
+            if (!filter.acceptsRelationship(type)) {
+                rejected += degrees.incomingDegree(type);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Moves to the next relationship. A relationship to the terminal left out by a type-limited selection comes first.
+     */
+    boolean next() {
+        if (pendingTerminalRelationshipId != StatementConstants.NO_SUCH_RELATIONSHIP) {
+            terminalRelationshipId = pendingTerminalRelationshipId;
+            pendingTerminalRelationshipId = StatementConstants.NO_SUCH_RELATIONSHIP;
+            counters.relationships++;
+            return true;
+        }
+        terminalRelationshipId = StatementConstants.NO_SUCH_RELATIONSHIP;
+        if (!relationshipCursor.next()) {
+            return false;
+        }
+        counters.relationships++;
+        return true;
+    }
+
+    long relationshipId() {
+        return terminalRelationshipId != StatementConstants.NO_SUCH_RELATIONSHIP
+                ? terminalRelationshipId
+                : relationshipCursor.relationshipReference();
+    }
+
+    long neighbourNodeId() {
+        return terminalRelationshipId != StatementConstants.NO_SUCH_RELATIONSHIP
+                ? terminalNodeId
+                : relationshipCursor.otherNodeReference();
+    }
+
+    /**
+     * True when the current relationship and neighbour pass the filters and the neighbour has the property,
+     * whose value is then available from {@link #value()}.
+     */
+    boolean qualifies() {
+        return acceptsRelationship() && qualifiesNeighbour();
+    }
+
+    /**
+     * True when a relationship of the given type to the given node passes the filters. The labels of the node are
+     * only read when a label list is configured.
+     */
+    boolean accepts(int type, long nodeId) {
+        if (!filter.acceptsRelationship(type)) {
+            rejectedType(type);
+            return false;
+        }
+        if (acceptsAllNodes) {
+            return true;
+        }
+        read.singleNode(nodeId, neighbourNodeCursor);
+        if (!neighbourNodeCursor.next()) {
+            counters.rejections++;
+            return false;
+        }
+        if (!filter.acceptsNode(neighbourNodeCursor)) {
+            rejectedLabels();
+            return false;
+        }
+        return true;
+    }
+
+    boolean acceptsRelationship() {
+        if (terminalRelationshipId != StatementConstants.NO_SUCH_RELATIONSHIP) {
+            return false;
+        }
+        if (!filter.acceptsRelationship(relationshipCursor.type())) {
+            rejectedType(relationshipCursor.type());
+            return false;
+        }
+        if (relationshipPropertyFilter != null && !relationshipPropertyFilter.accepts(relationshipCursor, propertyCursor)) {
+            rejectedProperties(false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * True when the current neighbour passes the label filters and has the property, whose value is then
+     * available from {@link #value()}.
+     */
+    boolean qualifiesNeighbour() {
+        if (score == null && !hasPropertyKey) {
+            missedProperty();
+            return false;
+        }
+        read.singleNode(neighbourNodeId(), neighbourNodeCursor);
+        if (!neighbourNodeCursor.next()) {
+            counters.rejections++;
+            return false;
+        }
+        if (!acceptsAllNodes && !filter.acceptsNode(neighbourNodeCursor)) {
+            rejectedLabels();
+            return false;
+        }
+        if (nodePropertyFilter != null && !nodePropertyFilter.accepts(neighbourNodeCursor, propertyCursor)) {
+            rejectedProperties(true);
+            return false;
+        }
+        double number = score == null ? propertyValue() : scoreValue();
+        if (Double.isNaN(number)) {
+            missedProperty();
+            return false;
+        }
+        if (score != null) {
+            ranked.set(number);
+        }
+        if (rankedPropertyPredicate != null && !rankedPropertyPredicate.test(number)) {
+            rejectedProperties(true);
+            return false;
+        }
+        value = lowestFirst ? -number : number;
+        return true;
+    }
+
+    /**
+     * Reads the property of the neighbour under the neighbour cursor into {@link #ranked}, returns it as a double or
+     * NaN when it has none that is a number.
+     */
+    private double propertyValue() {
+        neighbourNodeCursor.properties(propertyCursor, propertySelection);
+        if (!propertyCursor.next() || !ranked.set(propertyCursor.propertyValue())) {
+            return Double.NaN;
+        }
+        return ranked.doubleValue;
+    }
+
+    /**
+     * The {@code score} of the neighbour under the neighbour cursor and the current relationship, reading the
+     * properties of each in one pass; NaN when one of them is missing.
+     */
+    private double scoreValue() {
+        Arrays.fill(nodeValues, Double.NaN);
+        if (nodeScoreSelection != null) {
+            neighbourNodeCursor.properties(propertyCursor, nodeScoreSelection);
+            readScoreProperties(nodeScoreKeys, nodeValues);
+        }
+        if (relationshipValues.length > 0) {
+            if (terminalRelationshipId != StatementConstants.NO_SUCH_RELATIONSHIP) {
+                return Double.NaN;
+            }
+            Arrays.fill(relationshipValues, Double.NaN);
+            if (relationshipScoreSelection != null) {
+                relationshipCursor.properties(propertyCursor, relationshipScoreSelection);
+                readScoreProperties(relationshipScoreKeys, relationshipValues);
+            }
+        }
+        return score.evaluate(nodeValues, relationshipValues);
+    }
+
+    private void readScoreProperties(int[] keys, double[] values) {
+        while (propertyCursor.next()) {
+            int key = propertyCursor.propertyKey();
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == key) {
+                    Value propertyValue = propertyCursor.propertyValue();
+                    values[slot] = propertyValue instanceof NumberValue ? ((NumberValue) propertyValue).doubleValue() : Double.NaN;
+                }
+            }
+        }
+    }
+
+    /**
+     * The property keys of the names, {@link TokenConstants#NO_TOKEN} for names without one.
+     */
+    private static int[] propertyKeys(TokenRead tokenRead, List<String> names) {
+        return names.stream().mapToInt(tokenRead::propertyKey).toArray();
+    }
+
+    /**
+     * A selection of the keys that exist, or null when there are none to read.
+     */
+    private static PropertySelection selection(int[] keys) {
+        int[] existing = Arrays.stream(keys).filter(key -> key != TokenConstants.NO_TOKEN).toArray();
+        return existing.length == 0 ? null : PropertySelection.selection(existing);
+    }
+
+    /**
+     * Profiles an expansion of a node whose children the best child index answered, without reading them.
+     */
+    void expandedFromIndex(int degree) {
+        if (profile != null) {
+            profile.expandedFromIndex(counters.relationships, degree);
+        }
+    }
+
+    private void rejectedType(int type) {
+        counters.rejections++;
+        if (profile != null) {
+            profile.rejectedType(filter.rejectsByRelationshipWhiteList(type));
+        }
+    }
+
+    /**
+     * Counts the rejection of the neighbour under the neighbour cursor by the label lists.
+     */
+    private void rejectedLabels() {
+        counters.rejections++;
+        if (profile != null) {
+            profile.rejectedLabels(filter.rejectsByNodeWhiteList(neighbourNodeCursor));
+        }
+    }
+
+    /**
+     * Counts the rejection of the neighbour or of the relationship by the {@code where} predicates.
+     */
+    private void rejectedProperties(boolean ofNode) {
+        counters.rejections++;
+        if (profile != null) {
+            profile.rejectedProperties(ofNode);
+        }
+    }
+
+    private void missedProperty() {
+        counters.propertyMisses++;
+        if (profile != null) {
+            profile.missedProperty();
+        }
+    }
+
+    /**
+     * The value of the property of the current neighbour, negated with {@code order: 'min'} so that a higher value
+     * is always better.
+     */
+    double value() {
+        return value;
+    }
+
+    /**
+     * True when the value of the current neighbour is better than the given one, in the order of the config. Integral
+     * values are compared exactly, not as doubles.
+     */
+    boolean beats(RankedValue best) {
+        int comparison = ranked.compareTo(best);
+        return lowestFirst ? comparison < 0 : comparison > 0;
+    }
+
+    /**
+     * The value of the current neighbour as read, not negated with {@code order: 'min'}.
+     */
+    RankedValue rankedValue() {
+        return ranked;
+    }
+
+    /**
+     * The relationships read and neighbours rejected or missing the property since the counters were last drained.
+     */
+    TraversalCounters counters() {
+        return counters;
+    }
+
+    /**
+     * The profile of the walks, or null unless the config has {@code profile: true}.
+     */
+    TraversalProfile profile() {
+        return profile;
+    }
+
+    @Override
+    public void close() {
+        nodeCursor.close();
+        neighbourNodeCursor.close();
+        relationshipCursor.close();
+        propertyCursor.close();
+    }
+}
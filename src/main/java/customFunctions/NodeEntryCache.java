@@ -0,0 +1,215 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * The entries of {@link BestChildCache} and {@link SuffixMemo}, one per node and {@link TraversalCaches.Signature},
+ * bounded by their total number.
+ * <p>
+ * Nodes are spread over lock stripes, each an access ordered map of at most its share of the capacity that evicts
+ * its least recently used entry first, so walks over different nodes do not wait for each other. Every node also
+ * has a stamp, shared with the few nodes hashed to the same slot, which each invalidation of the node advances. A
+ * walk reads the stamp of a node before it reads the node's children, and its entry is only stored while the stamp
+ * is unchanged. An entry read before a concurrent commit so never outlives it, and a commit only rejects the entries
+ * of the nodes it changes.
+ */
+final class NodeEntryCache<V> {
+
+    private static final int STRIPES = 64;
+    private static final int STAMPS_PER_STRIPE = 64;
+
+    private final Stripe<V>[] stripes;
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES * STAMPS_PER_STRIPE);
+    private final Consumer<V> onRemoval;
+    private volatile boolean used;
+
+    /**
+     * @param onRemoval called with each entry that is evicted, replaced or invalidated
+     */
+    @SuppressWarnings("unchecked")
+    NodeEntryCache(int capacity, Consumer<V> onRemoval) {
+        this.onRemoval = onRemoval;
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>(Math.max(1, capacity / STRIPES));
+        }
+    }
+
+    private static int slot(long nodeId) {
+        long hash = nodeId * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 52) & (STRIPES * STAMPS_PER_STRIPE - 1);
+    }
+
+    private Stripe<V> stripe(int slot) {
+        return stripes[slot / STAMPS_PER_STRIPE];
+    }
+
+    /**
+     * The stamp of the node, to read before its children and to pass back to {@link #put}.
+     */
+    long stamp(long nodeId) {
+        if (!used) {
+            used = true;
+        }
+        return stamps.get(slot(nodeId));
+    }
+
+    /**
+     * True once a stamp was read, so a walk may be about to store entries.
+     */
+    boolean used() {
+        return used;
+    }
+
+    V get(long nodeId, TraversalCaches.Signature signature) {
+        Stripe<V> stripe = stripe(slot(nodeId));
+        synchronized (stripe) {
+            return stripe.entries.get(new Key(nodeId, signature));
+        }
+    }
+
+    /**
+     * Stores the entry unless the node was invalidated since its stamp was read, returns whether it was stored.
+     */
+    boolean put(long nodeId, TraversalCaches.Signature signature, V value, long stamp) {
+        int slot = slot(nodeId);
+        Stripe<V> stripe = stripe(slot);
+        synchronized (stripe) {
+            if (stamps.get(slot) != stamp) {
+                return false;
+            }
+            Key key = new Key(nodeId, signature);
+            V replaced = stripe.entries.put(key, value);
+            if (replaced != null) {
+                onRemoval.accept(replaced);
+            } else {
+                stripe.keysByNode.getIfAbsentPut(nodeId, () -> new HashSet<>(4)).add(key);
+            }
+            Iterator<Map.Entry<Key, V>> eldest = stripe.entries.entrySet().iterator();
+            while (stripe.entries.size() > stripe.capacity) {
+                Map.Entry<Key, V> entry = eldest.next();
+                eldest.remove();
+                stripe.forget(entry.getKey());
+                onRemoval.accept(entry.getValue());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Advances the stamps of the given nodes and drops their entries, or of all nodes when null.
+     */
+    void invalidate(LongHashSet nodeIds) {
+        if (nodeIds == null) {
+            for (int i = 0; i < STRIPES; i++) {
+                Stripe<V> stripe = stripes[i];
+                synchronized (stripe) {
+                    for (int slot = i * STAMPS_PER_STRIPE; slot < (i + 1) * STAMPS_PER_STRIPE; slot++) {
+                        stamps.incrementAndGet(slot);
+                    }
+                    stripe.entries.values().forEach(onRemoval);
+                    stripe.entries.clear();
+                    stripe.keysByNode.clear();
+                }
+            }
+            return;
+        }
+        nodeIds.forEach(nodeId -> {
+            int slot = slot(nodeId);
+            Stripe<V> stripe = stripe(slot);
+            synchronized (stripe) {
+                stamps.incrementAndGet(slot);
+                Set<Key> keys = stripe.keysByNode.remove(nodeId);
+                if (keys != null) {
+                    for (Key key : keys) {
+                        onRemoval.accept(stripe.entries.remove(key));
+                    }
+                }
+            }
+        });
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * The number of entries.
+     */
+    int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The number of nodes with entries.
+     */
+    int nodes() {
+        int nodes = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                nodes += stripe.keysByNode.size();
+            }
+        }
+        return nodes;
+    }
+
+    private static final class Stripe<V> {
+        final int capacity;
+        final LinkedHashMap<Key, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+        final LongObjectHashMap<Set<Key>> keysByNode = new LongObjectHashMap<>();
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void forget(Key key) {
+            Set<Key> keys = keysByNode.get(key.nodeId);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByNode.remove(key.nodeId);
+            }
+        }
+    }
+
+    private static final class Key {
+        final long nodeId;
+        final TraversalCaches.Signature signature;
+
+        Key(long nodeId, TraversalCaches.Signature signature) {
+            this.nodeId = nodeId;
+            this.signature = signature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return nodeId == other.nodeId && signature.equals(other.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(nodeId) + signature.hashCode();
+        }
+    }
+}
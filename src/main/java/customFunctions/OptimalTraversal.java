@@ -0,0 +1,180 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.StatementConstants;
+
+/**
+ * Best-first search for the route from root to terminal whose nodes carry the best aggregate of the property.
+ * <p>
+ * Partial routes are kept as {@link RouteLabels}, each pointing at the label it extends, and ordered by score.
+ * The aggregate is taken over the nodes between the root and the terminal:
+ * <ul>
+ *     <li>{@code min} maximises the smallest value on the route (bottleneck). Extending a route never raises its
+ *     score, so the search stops as soon as no queued label can beat the best route found.</li>
+ *     <li>{@code sum} maximises the sum of the values. Extending a route can raise its score, so every label
+ *     within {@code maxDepth} has to be expanded, except labels dominated by a label of the same node that scores
+ *     at least as well and is no deeper.</li>
+ * </ul>
+ * The search first runs with plain per-node dominance. Only when it meets a child already on the route it extends,
+ * so that a route could revisit a node, is it run again with {@link RouteLabels#routeAware route-aware} dominance,
+ * which keeps a label for every route through other nodes. Both runs spend the same {@code maxVisited} budget,
+ * charged for every expansion and every queued label.
+ * With {@code order: 'min'} the values are negated, so {@code sum} finds the route with the lowest total and
+ * {@code min} the route whose highest value is lowest.
+ * Routes never visit a node twice and are at most {@code maxDepth} hops long: a child that could only reach
+ * the terminal beyond that depth is never queued. As in the greedy walk, the relationship to the terminal
+ * node is taken regardless of the filters.
+ */
+class OptimalTraversal implements Traversal {
+
+    private static final int NO_LABEL = RouteLabels.NO_LABEL;
+
+    private final TraversalConfig config;
+    private final NeighbourCursor children;
+    private final RouteLabels labels = new RouteLabels();
+    private final TraversalBudget budget;
+    private boolean cycleFound;
+
+    OptimalTraversal(KernelTransaction ktx, String property, TraversalConfig config) {
+        this.config = config;
+        this.budget = new TraversalBudget(config);
+        this.children = new NeighbourCursor(ktx, property, config);
+    }
+
+    @Override
+    public TraversalPath traverse(long rootNodeId, long terminalNodeId) {
+        if (terminalNodeId == StatementConstants.NO_SUCH_NODE) {
+            throw new IllegalArgumentException("The 'optimal' algorithm needs a terminal node");
+        }
+        children.terminal(terminalNodeId);
+        return search(rootNodeId);
+    }
+
+    /**
+     * The route with the best score to any of the terminal nodes.
+     */
+    @Override
+    public TraversalPath traverse(long rootNodeId, LongSet terminalNodeIds) {
+        if (terminalNodeIds.isEmpty()) {
+            throw new IllegalArgumentException("The 'optimal' algorithm needs a terminal node");
+        }
+        children.terminals(terminalNodeIds);
+        return search(rootNodeId);
+    }
+
+    private TraversalPath search(long rootNodeId) {
+        budget.start();
+        if (config.maxDepth < 1) {
+            TraversalPath path = new TraversalPath(rootNodeId);
+            path.outcome = TraversalPath.Outcome.MAX_DEPTH_EXCEEDED;
+            return path;
+        }
+        cycleFound = false;
+        TraversalPath path = search(rootNodeId, false);
+        if (cycleFound && budget.exceeded() == null) {
+            path = search(rootNodeId, true);
+        }
+        return path;
+    }
+
+    private TraversalPath search(long rootNodeId, boolean routeAware) {
+        labels.clear();
+        labels.routeAware(routeAware);
+        labels.push(labels.add(rootNodeId, StatementConstants.NO_SUCH_RELATIONSHIP, NO_LABEL, 0, initialScore()));
+
+        int terminalLabel = NO_LABEL;
+        boolean depthExceeded = false;
+        while (!labels.isEmpty()) {
+            int label = labels.pop();
+            if (terminalLabel != NO_LABEL && config.aggregate == TraversalConfig.Aggregate.MIN
+                    && labels.score(label) <= labels.score(terminalLabel)) {
+                break;
+            }
+            if (!budget.spend()) {
+                return exceeded(rootNodeId);
+            }
+            if (!children.expand(labels.nodeId(label))) {
+                continue;
+            }
+            int depth = labels.depth(label) + 1;
+            while (children.next()) {
+                long childNodeId = children.neighbourNodeId();
+                if (children.atTerminal()) {
+                    if (terminalLabel == NO_LABEL || labels.score(label) > labels.score(terminalLabel)) {
+                        if (!budget.spend()) {
+                            return exceeded(rootNodeId);
+                        }
+                        terminalLabel = labels.add(childNodeId, children.relationshipId(), label, depth, labels.score(label));
+                    }
+                    continue;
+                }
+                if (depth >= config.maxDepth) {
+                    depthExceeded = true;
+                    continue;
+                }
+                if (labels.isOnRoute(label, childNodeId)) {
+                    cycleFound = true;
+                    continue;
+                }
+                if (!children.qualifies()) {
+                    continue;
+                }
+                double score = extend(labels.score(label), children.value());
+                if (!labels.dominated(label, childNodeId, depth, score)) {
+                    if (!budget.spend()) {
+                        return exceeded(rootNodeId);
+                    }
+                    labels.push(labels.add(childNodeId, children.relationshipId(), label, depth, score));
+                }
+            }
+        }
+
+        TraversalPath path = new TraversalPath(rootNodeId);
+        if (terminalLabel == NO_LABEL) {
+            path.outcome = depthExceeded ? TraversalPath.Outcome.MAX_DEPTH_EXCEEDED : TraversalPath.Outcome.NO_CANDIDATE;
+            return path;
+        }
+        int hops = labels.depth(terminalLabel);
+        long[] relationshipIds = new long[hops];
+        long[] nodeIds = new long[hops];
+        for (int label = terminalLabel, i = hops - 1; i >= 0; label = labels.parent(label), i--) {
+            relationshipIds[i] = labels.relationshipId(label);
+            nodeIds[i] = labels.nodeId(label);
+        }
+        for (int i = 0; i < hops; i++) {
+            path.add(relationshipIds[i], nodeIds[i]);
+        }
+        path.outcome = TraversalPath.Outcome.TERMINAL_REACHED;
+        return path;
+    }
+
+    private TraversalPath exceeded(long rootNodeId) {
+        TraversalPath path = new TraversalPath(rootNodeId);
+        path.outcome = budget.exceeded();
+        return path;
+    }
+
+    private double initialScore() {
+        return config.aggregate == TraversalConfig.Aggregate.MIN ? Double.POSITIVE_INFINITY : 0;
+    }
+
+    private double extend(double score, double value) {
+        return config.aggregate == TraversalConfig.Aggregate.MIN ? Math.min(score, value) : score + value;
+    }
+
+    @Override
+    public TraversalCounters counters() {
+        return children.counters();
+    }
+
+    @Override
+    public TraversalProfile profile() {
+        return children.profile();
+    }
+
+    @Override
+    public void close() {
+        children.close();
+    }
+}
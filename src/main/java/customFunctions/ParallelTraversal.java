@@ -0,0 +1,235 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs the greedy walks of a batch on at most {@code concurrency} worker threads.
+ * <p>
+ * Workers run on one pool of {@link TraversalConfig#MAX_CONCURRENCY} threads shared by all calls, so concurrent calls
+ * never run more workers than there are processors between them; idle threads expire. Each worker opens its own read
+ * transaction, with the security context of the calling transaction so it reads only what the caller may read, and
+ * its own {@link Traversal}, then claims pairs one at a time and hands the finished paths, which only hold ids, to
+ * the calling thread through a queue.
+ * <p>
+ * A worker only claims a pair when it can reserve a slot for its path, and at most two slots per worker are taken
+ * until the caller consumes their paths. A worker that finds no free slot gives its thread back to the pool instead
+ * of waiting, and the caller starts a worker again when it frees a slot, so a call that consumes slowly never holds
+ * threads that the workers of other calls could use. Paths come back in completion order, not pair order. Worker
+ * transactions only see committed data, not the uncommitted changes of the calling transaction. Each worker records
+ * its walks in the {@link TraversalMetrics} of the call.
+ * <p>
+ * A worker that fails, with any exception or error, cancels the others and hands its failure to the calling thread,
+ * which never waits for a path that will not come. When the calling transaction is terminated, or times out, the
+ * workers stop claiming pairs and the calling thread terminates their transactions and fails with the reason of the
+ * termination; closing the stream terminates them too.
+ */
+class ParallelTraversal implements Iterator<ParallelTraversal.Completed>, AutoCloseable {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ExecutorService WORKERS = workers();
+    /**
+     * How long the calling thread waits for a path before it checks whether its transaction was terminated.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    private final GraphDatabaseAPI db;
+    private final KernelTransaction callerTx;
+    private final String property;
+    private final TraversalConfig config;
+    private final long[] rootNodeIds;
+    private final long[] terminalNodeIds;
+    private final LongSet terminalNodeIdSet;
+    private final TraversalMetrics metrics;
+    private final int maxWorkers;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final Semaphore slots;
+    private final BlockingQueue<Completed> completed = new LinkedBlockingQueue<>();
+    private final Set<KernelTransaction> workerTxs = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+    private int received;
+
+    private ParallelTraversal(GraphDatabaseAPI db, KernelTransaction callerTx, String property, TraversalConfig config,
+                              long[] rootNodeIds, long[] terminalNodeIds, LongSet terminalNodeIdSet, TraversalMetrics metrics) {
+        this.db = db;
+        this.callerTx = callerTx;
+        this.property = property;
+        this.config = config;
+        this.rootNodeIds = rootNodeIds;
+        this.terminalNodeIds = terminalNodeIds;
+        this.terminalNodeIdSet = terminalNodeIdSet;
+        this.metrics = metrics;
+        this.maxWorkers = Math.max(1, Math.min(config.concurrency, rootNodeIds.length));
+        this.slots = new Semaphore(maxWorkers * 2);
+        for (int i = 0; i < maxWorkers; i++) {
+            startWorker();
+        }
+    }
+
+    private static ExecutorService workers() {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(TraversalConfig.MAX_CONCURRENCY, TraversalConfig.MAX_CONCURRENCY,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "custom-traversal-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    static Stream<Completed> stream(GraphDatabaseAPI db, KernelTransaction callerTx, String property, TraversalConfig config,
+                                    long[] rootNodeIds, long[] terminalNodeIds, TraversalMetrics metrics) {
+        return stream(new ParallelTraversal(db, callerTx, property, config, rootNodeIds, terminalNodeIds, null, metrics));
+    }
+
+    /**
+     * Walks from every root to any node of the terminal set, which the workers share read-only.
+     */
+    static Stream<Completed> stream(GraphDatabaseAPI db, KernelTransaction callerTx, String property, TraversalConfig config,
+                                    long[] rootNodeIds, LongSet terminalNodeIds, TraversalMetrics metrics) {
+        return stream(new ParallelTraversal(db, callerTx, property, config, rootNodeIds, null, terminalNodeIds, metrics));
+    }
+
+    private static Stream<Completed> stream(ParallelTraversal traversal) {
+        Spliterator<Completed> spliterator = Spliterators.spliterator(traversal, traversal.rootNodeIds.length, Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(traversal::close);
+    }
+
+    /**
+     * Starts one more worker when fewer than {@code maxWorkers} run and there is a pair to walk and a slot for its path.
+     * Called by every worker that stops and by the calling thread when it frees a slot, so a worker giving up its
+     * thread while the caller frees a slot cannot leave the call without workers.
+     */
+    private void resumeWorkers() {
+        while (!cancelled && !callerTx.isTerminated() && nextIndex.get() < rootNodeIds.length && slots.availablePermits() > 0) {
+            int active = activeWorkers.get();
+            if (active >= maxWorkers) {
+                return;
+            }
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                WORKERS.execute(this::work);
+                return;
+            }
+        }
+    }
+
+    private void startWorker() {
+        activeWorkers.incrementAndGet();
+        WORKERS.execute(this::work);
+    }
+
+    private void work() {
+        KernelTransaction workerKtx = null;
+        try (InternalTransaction workerTx = db.beginTransaction(KernelTransaction.Type.EXPLICIT, callerTx.securityContext());
+             Traversal traversal = Traversal.create(workerTx.kernelTransaction(), property, config)) {
+            workerKtx = workerTx.kernelTransaction();
+            workerTxs.add(workerKtx);
+            while (!cancelled && !callerTx.isTerminated() && slots.tryAcquire()) {
+                int index = nextIndex.getAndIncrement();
+                if (index >= rootNodeIds.length) {
+                    slots.release();
+                    break;
+                }
+                long start = System.nanoTime();
+                TraversalPath path = terminalNodeIdSet == null
+                        ? traversal.traverse(rootNodeIds[index], terminalNodeIds[index])
+                        : traversal.traverse(rootNodeIds[index], terminalNodeIdSet);
+                metrics.record(path, traversal.counters(), System.nanoTime() - start);
+                completed.add(new Completed(index, path, null));
+            }
+        } catch (Throwable e) {
+            if (!cancelled) {
+                cancelled = true;
+                completed.add(new Completed(-1, null, e));
+            }
+        } finally {
+            if (workerKtx != null) {
+                workerTxs.remove(workerKtx);
+            }
+            activeWorkers.decrementAndGet();
+        }
+        resumeWorkers();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return received < rootNodeIds.length;
+    }
+
+    @Override
+    public Completed next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Completed next;
+        try {
+            while ((next = completed.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                Optional<Status> terminated = callerTx.getReasonIfTerminated();
+                if (terminated.isPresent()) {
+                    cancel(terminated.get());
+                    callerTx.assertOpen();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(Status.Transaction.Terminated);
+            throw new IllegalStateException("Interrupted while waiting for traversal results", e);
+        }
+        if (next.failure != null) {
+            cancel(Status.Transaction.Terminated);
+            throw new IllegalStateException("Traversal worker failed", next.failure);
+        }
+        received++;
+        slots.release();
+        resumeWorkers();
+        return next;
+    }
+
+    @Override
+    public void close() {
+        cancel(Status.Transaction.Terminated);
+    }
+
+    /**
+     * Stops the workers from claiming pairs and terminates the transactions of those still walking.
+     */
+    private void cancel(Status reason) {
+        cancelled = true;
+        for (KernelTransaction workerKtx : workerTxs) {
+            workerKtx.markForTermination(reason);
+        }
+    }
+
+    static final class Completed {
+        final int index;
+        final TraversalPath path;
+        final Throwable failure;
+
+        private Completed(int index, TraversalPath path, Throwable failure) {
+            this.index = index;
+            this.path = path;
+            this.failure = failure;
+        }
+    }
+}
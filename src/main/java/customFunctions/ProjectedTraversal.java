@@ -0,0 +1,150 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.neo4j.internal.kernel.api.TokenRead;
+
+import java.util.BitSet;
+
+/**
+ * The greedy walk of {@link GreedyTraversal} over a {@link GraphProjection} instead of the store.
+ * <p>
+ * It takes the terminal as soon as it is a neighbour, otherwise the child with the best value passing the filters,
+ * the first one in relationship order among equals, and honours {@code maxDepth}, {@code onVisited}, {@code order},
+ * {@code maxVisited} and {@code timeoutMs} the same way. A hop is a range of the projection's arrays and a few array
+ * reads per relationship, and the label lists of the projection and of the call are resolved once into a bitset of
+ * accepted nodes. Like the terminal, the root is exempt from the lists. Nodes created after the projection have no
+ * children.
+ */
+class ProjectedTraversal implements Traversal {
+
+    private final GraphProjection projection;
+    private final TraversalConfig config;
+    private final TokenFilter filter;
+    private final BitSet acceptedNodes;
+    private final boolean skipVisited;
+    private final boolean lowestFirst;
+    private final TraversalBudget budget;
+    private final IntHashSet visited = new IntHashSet();
+    private final TraversalCounters counters = new TraversalCounters();
+    private LongSet terminalNodeIds;
+
+    ProjectedTraversal(GraphProjection projection, TokenRead tokenRead, TraversalConfig config) {
+        if (config.algorithm != TraversalConfig.Algorithm.GREEDY) {
+            throw new IllegalArgumentException("Traversals of a projection only support algorithm 'greedy'");
+        }
+        if (config.score != null) {
+            throw new IllegalArgumentException("Traversals of a projection do not support config option 'score'");
+        }
+        if (config.hasPropertyPredicates()) {
+            throw new IllegalArgumentException("Traversals of a projection do not support 'where' predicates");
+        }
+        this.projection = projection;
+        this.config = config;
+        this.filter = TokenFilter.compile(config, tokenRead);
+        this.acceptedNodes = projection.acceptedNodes(filter);
+        this.skipVisited = config.onVisited == TraversalConfig.OnVisited.FALLBACK;
+        this.lowestFirst = config.order == TraversalConfig.Order.MIN;
+        this.budget = new TraversalBudget(config);
+    }
+
+    @Override
+    public TraversalPath traverse(long rootNodeId, long terminalNodeId) {
+        terminalNodeIds = null;
+        return walk(rootNodeId, projection.indexOf(terminalNodeId));
+    }
+
+    @Override
+    public TraversalPath traverse(long rootNodeId, LongSet terminalNodeIds) {
+        this.terminalNodeIds = terminalNodeIds;
+        return walk(rootNodeId, -1);
+    }
+
+    private TraversalPath walk(long rootNodeId, int terminal) {
+        TraversalPath path = new TraversalPath(rootNodeId);
+        int current = projection.indexOf(rootNodeId);
+        visited.clear();
+        visited.add(current);
+        budget.start();
+        long level = 0;
+        while (true) {
+            if (++level > config.maxDepth) {
+                path.outcome = TraversalPath.Outcome.MAX_DEPTH_EXCEEDED;
+                return path;
+            }
+            if (!budget.spend()) {
+                path.outcome = budget.exceeded();
+                return path;
+            }
+            int best = current < 0 ? -1 : bestRelationship(current, terminal);
+            if (best < 0) {
+                path.outcome = TraversalPath.Outcome.NO_CANDIDATE;
+                return path;
+            }
+            int child = projection.targets[best];
+            if (!visited.add(child)) {
+                path.outcome = TraversalPath.Outcome.ALREADY_VISITED;
+                return path;
+            }
+            path.add(projection.relationshipIds[best], projection.nodeIds[child]);
+            if (isTerminal(child, terminal)) {
+                path.outcome = TraversalPath.Outcome.TERMINAL_REACHED;
+                return path;
+            }
+            current = child;
+        }
+    }
+
+    /**
+     * The index of the relationship to the terminal or to the best child of the node, or -1 when there is none.
+     */
+    private int bestRelationship(int node, int terminal) {
+        int best = -1;
+        for (int relationship = projection.offsets[node]; relationship < projection.offsets[node + 1]; relationship++) {
+            counters.relationships++;
+            int child = projection.targets[relationship];
+            if (isTerminal(child, terminal)) {
+                return relationship;
+            }
+            if (skipVisited && visited.contains(child)) {
+                continue;
+            }
+            if (!projection.acceptsRelationship(relationship, filter)
+                    || (acceptedNodes != null && !acceptedNodes.get(child))) {
+                counters.rejections++;
+                continue;
+            }
+            if (!projection.hasValue(child)) {
+                counters.propertyMisses++;
+                continue;
+            }
+            if (best < 0 || beats(child, projection.targets[best])) {
+                best = relationship;
+            }
+        }
+        return best;
+    }
+
+    private boolean beats(int child, int bestChild) {
+        int comparison = projection.compareValues(child, bestChild);
+        return lowestFirst ? comparison < 0 : comparison > 0;
+    }
+
+    private boolean isTerminal(int node, int terminal) {
+        return node == terminal || (terminalNodeIds != null && terminalNodeIds.contains(projection.nodeIds[node]));
+    }
+
+    @Override
+    public TraversalCounters counters() {
+        return counters;
+    }
+
+    @Override
+    public TraversalProfile profile() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,67 @@
+package customFunctions;
+
+import org.neo4j.internal.kernel.api.EntityCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.token.api.TokenConstants;
+
+import java.util.List;
+
+/**
+ * The {@link PropertyPredicate}s of the nodes or the relationships of a {@link TraversalConfig}, resolved to property
+ * keys.
+ * <p>
+ * The properties of all predicates are read in a single pass over the property chain of the entity, through a
+ * selection of their keys, and the pass stops at the first predicate that fails. A predicate on a property that has
+ * no key in the database can never pass, so the filter then rejects everything without reading.
+ */
+class PropertyFilter {
+
+    private final PropertyPredicate[] predicates;
+    private final int[] keys;
+    private final PropertySelection selection;
+    private final boolean satisfiable;
+
+    private PropertyFilter(List<PropertyPredicate> predicates, TokenRead tokenRead) {
+        this.predicates = predicates.toArray(new PropertyPredicate[0]);
+        this.keys = new int[this.predicates.length];
+        boolean satisfiable = true;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = tokenRead.propertyKey(this.predicates[i].property);
+            satisfiable &= keys[i] != TokenConstants.NO_TOKEN;
+        }
+        this.satisfiable = satisfiable;
+        this.selection = satisfiable ? PropertySelection.selection(keys) : null;
+    }
+
+    /**
+     * The filter of the predicates, or null when there are none.
+     */
+    static PropertyFilter compile(List<PropertyPredicate> predicates, TokenRead tokenRead) {
+        return predicates.isEmpty() ? null : new PropertyFilter(predicates, tokenRead);
+    }
+
+    /**
+     * True when the properties of the entity under the cursor pass every predicate.
+     */
+    boolean accepts(EntityCursor entity, PropertyCursor propertyCursor) {
+        if (!satisfiable) {
+            return false;
+        }
+        entity.properties(propertyCursor, selection);
+        int passed = 0;
+        while (propertyCursor.next()) {
+            int key = propertyCursor.propertyKey();
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    if (!predicates[i].test(propertyCursor.propertyValue())) {
+                        return false;
+                    }
+                    passed++;
+                }
+            }
+        }
+        return passed == keys.length;
+    }
+}
@@ -0,0 +1,138 @@
+package customFunctions;
+
+import org.neo4j.values.storable.NumberValue;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A condition on one property of a node or relationship, from the {@code where} map of the {@code nodes} or
+ * {@code relationships} config: {@code {where: {sens_value: {gte: 40, lt: 90}, active: true}}}.
+ * <p>
+ * A plain value asks for equality, a map combines any of {@code eq}, {@code gt}, {@code gte}, {@code lt} and
+ * {@code lte}. Bounds must be numbers and compare integral and floating point values as doubles. An entity without
+ * the property never passes.
+ */
+class PropertyPredicate {
+
+    final String property;
+    private final Value equalTo;
+    private final double lower;
+    private final boolean lowerInclusive;
+    private final double upper;
+    private final boolean upperInclusive;
+    private final boolean hasRange;
+    private final String description;
+
+    private PropertyPredicate(String property, Value equalTo, double lower, boolean lowerInclusive,
+                              double upper, boolean upperInclusive, String description) {
+        this.property = property;
+        this.equalTo = equalTo;
+        this.lower = lower;
+        this.lowerInclusive = lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upperInclusive;
+        this.hasRange = lower != Double.NEGATIVE_INFINITY || upper != Double.POSITIVE_INFINITY;
+        this.description = description;
+    }
+
+    /**
+     * The predicates of the {@code where} map, sorted by property.
+     */
+    static List<PropertyPredicate> parseAll(Map<String, Object> where) {
+        List<PropertyPredicate> predicates = new ArrayList<>(where.size());
+        for (Map.Entry<String, Object> entry : new TreeMap<>(where).entrySet()) {
+            predicates.add(parse(entry.getKey(), entry.getValue()));
+        }
+        return predicates;
+    }
+
+    private static PropertyPredicate parse(String property, Object condition) {
+        if (!(condition instanceof Map)) {
+            return new PropertyPredicate(property, value(property, condition), Double.NEGATIVE_INFINITY, true,
+                    Double.POSITIVE_INFINITY, true, property + "=" + condition);
+        }
+        Value equalTo = null;
+        double lower = Double.NEGATIVE_INFINITY;
+        boolean lowerInclusive = true;
+        double upper = Double.POSITIVE_INFINITY;
+        boolean upperInclusive = true;
+        Map<String, Object> operators = new TreeMap<>((Map<String, Object>) condition);
+        for (Map.Entry<String, Object> operator : operators.entrySet()) {
+            switch (operator.getKey()) {
+                case "eq":
+                    equalTo = value(property, operator.getValue());
+                    break;
+                case "gt":
+                case "gte": {
+                    double bound = bound(property, operator.getKey(), operator.getValue());
+                    boolean inclusive = operator.getKey().equals("gte");
+                    if (bound > lower || (bound == lower && !inclusive)) {
+                        lower = bound;
+                        lowerInclusive = inclusive;
+                    }
+                    break;
+                }
+                case "lt":
+                case "lte": {
+                    double bound = bound(property, operator.getKey(), operator.getValue());
+                    boolean inclusive = operator.getKey().equals("lte");
+                    if (bound < upper || (bound == upper && !inclusive)) {
+                        upper = bound;
+                        upperInclusive = inclusive;
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unsupported operator '" + operator.getKey() + "' for property '"
+                            + property + "', expected one of eq, gt, gte, lt, lte");
+            }
+        }
+        return new PropertyPredicate(property, equalTo, lower, lowerInclusive, upper, upperInclusive, property + operators);
+    }
+
+    private static Value value(String property, Object value) {
+        try {
+            return Values.of(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported value '" + value + "' for property '" + property + "'");
+        }
+    }
+
+    private static double bound(String property, String operator, Object bound) {
+        if (!(bound instanceof Number)) {
+            throw new IllegalArgumentException("Operator '" + operator + "' for property '" + property + "' needs a number, got '" + bound + "'");
+        }
+        return ((Number) bound).doubleValue();
+    }
+
+    boolean test(Value value) {
+        if (equalTo != null && !equalTo.equals(value)) {
+            return false;
+        }
+        return !hasRange || (value instanceof NumberValue && inRange(((NumberValue) value).doubleValue()));
+    }
+
+    /**
+     * Tests a property value already read as a number.
+     */
+    boolean test(double value) {
+        if (equalTo != null && !(equalTo instanceof NumberValue && ((NumberValue) equalTo).doubleValue() == value)) {
+            return false;
+        }
+        return !hasRange || inRange(value);
+    }
+
+    private boolean inRange(double value) {
+        return (lowerInclusive ? value >= lower : value > lower) && (upperInclusive ? value <= upper : value < upper);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
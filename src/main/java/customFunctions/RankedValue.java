@@ -0,0 +1,88 @@
+package customFunctions;
+
+import org.neo4j.values.storable.IntegralValue;
+import org.neo4j.values.storable.NumberValue;
+import org.neo4j.values.storable.Value;
+
+/**
+ * A property value as the greedy walks rank it: integral values are compared exactly as longs, floating point values
+ * as doubles, and an integral value with a floating point one by their exact numeric values, so distinct integers
+ * above 2^53 never tie. The double of an integral value is kept too, for the searches that add values up.
+ * <p>
+ * Reused for every neighbour; {@link #compare} orders values kept in primitive arrays the same way.
+ */
+final class RankedValue {
+
+    boolean integral;
+    long integralValue;
+    double doubleValue;
+
+    /**
+     * Takes the value of the property, returns false when it is not a number or is NaN.
+     */
+    boolean set(Value value) {
+        if (value instanceof IntegralValue) {
+            integral = true;
+            integralValue = ((IntegralValue) value).longValue();
+            doubleValue = integralValue;
+            return true;
+        }
+        if (!(value instanceof NumberValue)) {
+            return false;
+        }
+        integral = false;
+        // adding zero turns -0.0 into 0.0
+        doubleValue = ((NumberValue) value).doubleValue() + 0.0;
+        return !Double.isNaN(doubleValue);
+    }
+
+    /**
+     * Takes a floating point value, such as a score.
+     */
+    void set(double value) {
+        integral = false;
+        doubleValue = value;
+    }
+
+    void set(RankedValue other) {
+        integral = other.integral;
+        integralValue = other.integralValue;
+        doubleValue = other.doubleValue;
+    }
+
+    int compareTo(RankedValue other) {
+        return compare(integral, integralValue, doubleValue, other.integral, other.integralValue, other.doubleValue);
+    }
+
+    /**
+     * Compares two values by their exact numeric values; the longs are only read for integral values. Neither
+     * double may be NaN.
+     */
+    static int compare(boolean leftIntegral, long leftLong, double leftDouble, boolean rightIntegral, long rightLong, double rightDouble) {
+        if (leftIntegral && rightIntegral) {
+            return Long.compare(leftLong, rightLong);
+        }
+        if (!leftIntegral && !rightIntegral) {
+            return leftDouble < rightDouble ? -1 : leftDouble > rightDouble ? 1 : 0;
+        }
+        return leftIntegral ? compare(leftLong, rightDouble) : -compare(rightLong, leftDouble);
+    }
+
+    /**
+     * Compares a long with a double exactly, without rounding the long to a double.
+     */
+    private static int compare(long integral, double floating) {
+        if (floating >= 0x1p63) {
+            return -1;
+        }
+        if (floating < -0x1p63) {
+            return 1;
+        }
+        double floor = Math.floor(floating);
+        long floorValue = (long) floor;
+        if (integral != floorValue) {
+            return Long.compare(integral, floorValue);
+        }
+        return floor < floating ? -1 : 0;
+    }
+}
@@ -0,0 +1,201 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * The partial routes of a route search, shared by {@link OptimalTraversal}, {@link AlternativeRoutes} and
+ * {@link BeamTraversal}.
+ * <p>
+ * Each partial route is a label in parallel primitive arrays: the node it ends at, the relationship into that node,
+ * the label it extends, its depth and its score. The best-first searches order labels by score in a binary heap of
+ * label indexes.
+ * <p>
+ * Whether a node is on the route of a label is answered without walking the route. The labels ending at each node
+ * are chained, and every label keeps a jump pointer to one of its ancestors, chosen so that the ancestor of a label
+ * at any depth is found in a logarithmic number of steps (Myers' skew-binary jump pointers). A node is on the route
+ * when one of its labels is the ancestor of the route at that label's depth; a node without labels is on no route.
+ * <p>
+ * A new label is dominated, and need not be searched, when the best label of its node scores at least as well and is
+ * no deeper. Where no route can revisit a node, every continuation of the new label is then also a continuation of
+ * the best label. Where one can, a continuation may run through a node of the best label's route, so with
+ * {@link #routeAware} set the best label's route must also have all its nodes on the new label's route. Labels
+ * ending at the same node through different nodes are then both kept, as only one of them may have a loopless
+ * continuation to the terminal.
+ */
+final class RouteLabels {
+
+    static final int NO_LABEL = -1;
+
+    private final LongIntHashMap bestLabelByNode = new LongIntHashMap();
+    private final LongIntHashMap lastLabelByNode = new LongIntHashMap();
+    private long[] nodeIds = new long[64];
+    private long[] relationshipIds = new long[64];
+    private int[] parents = new int[64];
+    private int[] depths = new int[64];
+    private double[] scores = new double[64];
+    private int[] jumps = new int[64];
+    private int[] previousAtNode = new int[64];
+    private int count;
+    private int[] heap = new int[64];
+    private int heapSize;
+    private boolean routeAware = true;
+
+    void clear() {
+        count = 0;
+        heapSize = 0;
+        bestLabelByNode.clear();
+        lastLabelByNode.clear();
+    }
+
+    /**
+     * Whether a dominating label's route has to lie on the route of the label it dominates, true unless the caller
+     * knows no route revisits a node.
+     */
+    void routeAware(boolean routeAware) {
+        this.routeAware = routeAware;
+    }
+
+    long nodeId(int label) {
+        return nodeIds[label];
+    }
+
+    long relationshipId(int label) {
+        return relationshipIds[label];
+    }
+
+    int parent(int label) {
+        return parents[label];
+    }
+
+    int depth(int label) {
+        return depths[label];
+    }
+
+    double score(int label) {
+        return scores[label];
+    }
+
+    /**
+     * Adds the label extending the given parent, or starting a route when the parent is {@link #NO_LABEL}.
+     */
+    int add(long nodeId, long relationshipId, int parent, int depth, double score) {
+        if (count == nodeIds.length) {
+            int capacity = count * 2;
+            nodeIds = Arrays.copyOf(nodeIds, capacity);
+            relationshipIds = Arrays.copyOf(relationshipIds, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            jumps = Arrays.copyOf(jumps, capacity);
+            previousAtNode = Arrays.copyOf(previousAtNode, capacity);
+        }
+        int label = count++;
+        nodeIds[label] = nodeId;
+        relationshipIds[label] = relationshipId;
+        parents[label] = parent;
+        depths[label] = depth;
+        scores[label] = score;
+        if (parent == NO_LABEL) {
+            jumps[label] = label;
+        } else {
+            int jump = jumps[parent];
+            jumps[label] = depths[parent] - depths[jump] == depths[jump] - depths[jumps[jump]] ? jumps[jump] : parent;
+        }
+        previousAtNode[label] = lastLabelByNode.getIfAbsent(nodeId, NO_LABEL);
+        lastLabelByNode.put(nodeId, label);
+        int best = bestLabelByNode.getIfAbsent(nodeId, NO_LABEL);
+        if (best == NO_LABEL || scores[best] < score) {
+            bestLabelByNode.put(nodeId, label);
+        }
+        return label;
+    }
+
+    /**
+     * True when the node is on the route of the label.
+     */
+    boolean isOnRoute(int label, long nodeId) {
+        for (int atNode = lastLabelByNode.getIfAbsent(nodeId, NO_LABEL); atNode != NO_LABEL; atNode = previousAtNode[atNode]) {
+            if (depths[atNode] <= depths[label] && ancestor(label, depths[atNode]) == atNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True when a label extending the parent to the node, at the given depth and with the given score, is dominated
+     * by the best label of the node.
+     */
+    boolean dominated(int parent, long nodeId, int depth, double score) {
+        int best = bestLabelByNode.getIfAbsent(nodeId, NO_LABEL);
+        if (best == NO_LABEL || scores[best] < score || depths[best] > depth) {
+            return false;
+        }
+        if (!routeAware) {
+            return true;
+        }
+        for (int label = parents[best]; label != NO_LABEL; label = parents[label]) {
+            if (!isOnRoute(parent, nodeIds[label])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The ancestor of the label at the given depth, no deeper than the label.
+     */
+    private int ancestor(int label, int depth) {
+        while (depths[label] > depth) {
+            label = depths[jumps[label]] >= depth ? jumps[label] : parents[label];
+        }
+        return label;
+    }
+
+    boolean isEmpty() {
+        return heapSize == 0;
+    }
+
+    void push(int label) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[heap[parent]] >= scores[label]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = label;
+    }
+
+    /**
+     * Removes and returns the queued label with the best score.
+     */
+    int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && scores[heap[child + 1]] > scores[heap[child]]) {
+                child++;
+            }
+            if (scores[last] >= scores[heap[child]]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,251 @@
+package customFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The config option {@code score}: an arithmetic expression over properties of the child node and of the relationship
+ * leading to it, such as {@code 'node.sens_value - rel.cost'}, that ranks children instead of the property of the call.
+ * <p>
+ * The expression is made of numbers, {@code node.<property>}, {@code rel.<property>}, {@code + - * /}, unary minus and
+ * parentheses. It is parsed once per call into a tree of {@link Term}s in which every property is a slot index,
+ * and subtrees without properties are folded into constants. The caller reads all the node properties of a
+ * child, and then all the relationship properties, in a single pass over each property chain. It fills the slots and
+ * evaluates the tree, so no name is looked up and no text is interpreted per relationship. A property that is missing or
+ * not a number leaves its slot NaN, which makes the score NaN and the child does not qualify.
+ */
+class ScoreExpression {
+
+    private final String text;
+    private final Term root;
+    private final List<String> nodeProperties;
+    private final List<String> relationshipProperties;
+
+    private ScoreExpression(String text, Term root, List<String> nodeProperties, List<String> relationshipProperties) {
+        this.text = text;
+        this.root = root;
+        this.nodeProperties = nodeProperties;
+        this.relationshipProperties = relationshipProperties;
+    }
+
+    /**
+     * Parses the expression, throws {@link IllegalArgumentException} when it is not valid.
+     */
+    static ScoreExpression parse(String text) {
+        Parser parser = new Parser(text);
+        Term root = parser.expression();
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw parser.error("unexpected '" + text.charAt(parser.position) + "'");
+        }
+        return new ScoreExpression(text, root, parser.nodeProperties, parser.relationshipProperties);
+    }
+
+    /**
+     * The node properties read by the expression, in slot order.
+     */
+    List<String> nodeProperties() {
+        return nodeProperties;
+    }
+
+    /**
+     * The relationship properties read by the expression, in slot order.
+     */
+    List<String> relationshipProperties() {
+        return relationshipProperties;
+    }
+
+    double evaluate(double[] nodeValues, double[] relationshipValues) {
+        return root.evaluate(nodeValues, relationshipValues);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * A compiled subtree of the expression.
+     */
+    interface Term {
+        double evaluate(double[] nodeValues, double[] relationshipValues);
+    }
+
+    private static final class Constant implements Term {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double evaluate(double[] nodeValues, double[] relationshipValues) {
+            return value;
+        }
+    }
+
+    private static final class Parser {
+        private final String text;
+        private final List<String> nodeProperties = new ArrayList<>();
+        private final List<String> relationshipProperties = new ArrayList<>();
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Term expression() {
+            Term term = product();
+            while (true) {
+                if (accept('+')) {
+                    term = combine(term, product(), '+');
+                } else if (accept('-')) {
+                    term = combine(term, product(), '-');
+                } else {
+                    return term;
+                }
+            }
+        }
+
+        private Term product() {
+            Term term = factor();
+            while (true) {
+                if (accept('*')) {
+                    term = combine(term, factor(), '*');
+                } else if (accept('/')) {
+                    term = combine(term, factor(), '/');
+                } else {
+                    return term;
+                }
+            }
+        }
+
+        private Term factor() {
+            if (accept('-')) {
+                Term operand = factor();
+                if (operand instanceof Constant) {
+                    return new Constant(-((Constant) operand).value);
+                }
+                return (nodeValues, relationshipValues) -> -operand.evaluate(nodeValues, relationshipValues);
+            }
+            if (accept('(')) {
+                Term term = expression();
+                if (!accept(')')) {
+                    throw error("expected ')'");
+                }
+                return term;
+            }
+            skipWhitespace();
+            if (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                return number();
+            }
+            return property();
+        }
+
+        private Term number() {
+            int start = position;
+            while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                position++;
+            }
+            try {
+                return new Constant(Double.parseDouble(text.substring(start, position)));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("invalid number");
+            }
+        }
+
+        private Term property() {
+            int start = position;
+            String owner = identifier();
+            if (!accept('.')) {
+                position = start;
+                throw error("expected a number, 'node.<property>' or 'rel.<property>'");
+            }
+            String name = identifier();
+            switch (owner.toLowerCase(Locale.ROOT)) {
+                case "node": {
+                    int slot = slot(nodeProperties, name);
+                    return (nodeValues, relationshipValues) -> nodeValues[slot];
+                }
+                case "rel": {
+                    int slot = slot(relationshipProperties, name);
+                    return (nodeValues, relationshipValues) -> relationshipValues[slot];
+                }
+                default:
+                    position = start;
+                    throw error("expected 'node' or 'rel'");
+            }
+        }
+
+        private String identifier() {
+            skipWhitespace();
+            int start = position;
+            while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+                position++;
+            }
+            if (start == position) {
+                throw error("expected a name");
+            }
+            return text.substring(start, position);
+        }
+
+        private static int slot(List<String> properties, String name) {
+            int slot = properties.indexOf(name);
+            if (slot < 0) {
+                slot = properties.size();
+                properties.add(name);
+            }
+            return slot;
+        }
+
+        private static Term combine(Term left, Term right, char operator) {
+            if (left instanceof Constant && right instanceof Constant) {
+                return new Constant(apply(((Constant) left).value, ((Constant) right).value, operator));
+            }
+            switch (operator) {
+                case '+':
+                    return (nodeValues, relationshipValues) -> left.evaluate(nodeValues, relationshipValues) + right.evaluate(nodeValues, relationshipValues);
+                case '-':
+                    return (nodeValues, relationshipValues) -> left.evaluate(nodeValues, relationshipValues) - right.evaluate(nodeValues, relationshipValues);
+                case '*':
+                    return (nodeValues, relationshipValues) -> left.evaluate(nodeValues, relationshipValues) * right.evaluate(nodeValues, relationshipValues);
+                default:
+                    return (nodeValues, relationshipValues) -> left.evaluate(nodeValues, relationshipValues) / right.evaluate(nodeValues, relationshipValues);
+            }
+        }
+
+        private static double apply(double left, double right, char operator) {
+            switch (operator) {
+                case '+':
+                    return left + right;
+                case '-':
+                    return left - right;
+                case '*':
+                    return left * right;
+                default:
+                    return left / right;
+            }
+        }
+
+        private boolean accept(char expected) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid config option 'score' at position " + position + ": " + message);
+        }
+    }
+}
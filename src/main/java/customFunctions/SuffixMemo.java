@@ -0,0 +1,143 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The routes found by greedy walks with {@code cache: true} and {@code onVisited: 'stop'}, kept across calls so
+ * a later walk reaching a node of a known route can take the rest of it without expanding a node.
+ * <p>
+ * When the walk stops at a visited node its choices do not depend on where it came from, so the rest of a route
+ * from any of its nodes is the route a walk starting there would find. A finished route is stored as a
+ * {@link Segment} of hops, and each node it leaves from gets an {@link Entry} pointing at its position under the
+ * {@link TraversalCaches.Signature} of the call. A walk that took the rest of its route from a known segment
+ * stores only its own hops, linked to that segment, so routes sharing a suffix share its memory.
+ * <p>
+ * The entries are kept in a {@link NodeEntryCache} holding at most the capacity of them in all. A segment is only
+ * stored while none of the nodes it leaves from changed since the walk expanded them. Evicting, replacing or
+ * invalidating an entry invalidates its segment; walks check the segments they follow and expand nodes again from
+ * the first invalid one, see {@link TraversalCaches} for invalidation.
+ */
+class SuffixMemo {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final NodeEntryCache<Entry> entries;
+
+    SuffixMemo(int capacity) {
+        this.entries = new NodeEntryCache<>(capacity, entry -> entry.segment.valid = false);
+    }
+
+    /**
+     * The stamp of the node, to read before expanding it; pass the stamps of the nodes a segment leaves from back to
+     * {@link #put}.
+     */
+    long stamp(long nodeId) {
+        return entries.stamp(nodeId);
+    }
+
+    boolean used() {
+        return entries.used();
+    }
+
+    /**
+     * The position of the node on a valid route, or null when it is on none.
+     */
+    Entry get(long nodeId, TraversalCaches.Signature signature) {
+        Entry entry = entries.get(nodeId, signature);
+        if (entry == null || !entry.segment.valid) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * Gives each node the segment leaves from an entry. The stamps are those of these nodes, in order, read when the
+     * walk expanded them; should one of them have changed since, the segment is invalidated instead.
+     */
+    void put(Segment segment, TraversalCaches.Signature signature, long[] stamps) {
+        int hops = segment.relationshipIds.length;
+        boolean stored = entries.put(segment.startNodeId, signature, new Entry(segment, 0), stamps[0]);
+        for (int i = 1; i < hops && stored; i++) {
+            stored = entries.put(segment.nodeIds[i - 1], signature, new Entry(segment, i), stamps[i]);
+        }
+        if (stored && segment.next == null && segment.outcome == TraversalPath.Outcome.NO_CANDIDATE && hops > 0) {
+            stored = entries.put(segment.nodeIds[hops - 1], signature, new Entry(segment, hops), stamps[hops]);
+        }
+        if (!stored) {
+            segment.valid = false;
+        }
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * The number of nodes with entries.
+     */
+    int size() {
+        return entries.nodes();
+    }
+
+    /**
+     * The number of entries of all nodes.
+     */
+    int entries() {
+        return entries.size();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Drops the entries of the given nodes and invalidates their segments, or drops everything when null.
+     */
+    void invalidate(LongHashSet nodeIds) {
+        entries.invalidate(nodeIds);
+    }
+
+    /**
+     * Hops of a route from {@link #startNodeId}, continued by hop {@link #nextIndex} of the {@link #next} segment
+     * when there is one, or else ended with the {@link #outcome} of the walk.
+     */
+    static final class Segment {
+        final long startNodeId;
+        final long[] relationshipIds;
+        final long[] nodeIds;
+        final Segment next;
+        final int nextIndex;
+        final TraversalPath.Outcome outcome;
+        volatile boolean valid = true;
+
+        Segment(long startNodeId, long[] relationshipIds, long[] nodeIds, Segment next, int nextIndex, TraversalPath.Outcome outcome) {
+            this.startNodeId = startNodeId;
+            this.relationshipIds = relationshipIds;
+            this.nodeIds = nodeIds;
+            this.next = next;
+            this.nextIndex = nextIndex;
+            this.outcome = outcome;
+        }
+    }
+
+    /**
+     * The hop of {@link #segment} that leaves from a node.
+     */
+    static final class Entry {
+        final Segment segment;
+        final int index;
+
+        Entry(Segment segment, int index) {
+            this.segment = segment;
+            this.index = index;
+        }
+    }
+}
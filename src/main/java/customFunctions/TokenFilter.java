@@ -0,0 +1,113 @@
+package customFunctions;
+
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.token.api.TokenConstants;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * The label and relationship type white and black lists of a {@link TraversalConfig}, resolved to token ids.
+ * <p>
+ * Relationship types are kept in bitsets indexed by type id, so checking a relationship is a couple of bit
+ * tests. Labels are kept as id arrays probed with {@link NodeCursor#hasLabel(int)}, which avoids reading the
+ * full label set of every candidate. Names that have no token in the database cannot match anything: they
+ * are dropped from black lists, and a white list made only of such names rejects everything.
+ */
+class TokenFilter {
+
+    private final boolean hasRelationshipWhiteList;
+    private final BitSet relationshipWhiteList;
+    private final BitSet relationshipBlackList;
+    private final boolean hasNodeWhiteList;
+    private final int[] nodeWhiteList;
+    private final int[] nodeBlackList;
+
+    private TokenFilter(TraversalConfig config, TokenRead tokenRead) {
+        this.hasRelationshipWhiteList = !config.relationshipWhiteList.isEmpty();
+        this.relationshipWhiteList = toBitSet(resolve(config.relationshipWhiteList, tokenRead::relationshipType));
+        this.relationshipBlackList = toBitSet(resolve(config.relationshipBlackList, tokenRead::relationshipType));
+        this.hasNodeWhiteList = !config.nodeWhiteList.isEmpty();
+        this.nodeWhiteList = resolve(config.nodeWhiteList, tokenRead::nodeLabel);
+        this.nodeBlackList = resolve(config.nodeBlackList, tokenRead::nodeLabel);
+    }
+
+    static TokenFilter compile(TraversalConfig config, TokenRead tokenRead) {
+        return new TokenFilter(config, tokenRead);
+    }
+
+    /**
+     * True when a relationship type list is configured, so some relationships may be rejected by their type.
+     */
+    boolean filtersRelationships() {
+        return hasRelationshipWhiteList || !relationshipBlackList.isEmpty();
+    }
+
+    boolean acceptsRelationship(int type) {
+        return (!hasRelationshipWhiteList || relationshipWhiteList.get(type)) && !relationshipBlackList.get(type);
+    }
+
+    /**
+     * True when a rejected type is missing from the white list, false when it is only on the black list.
+     */
+    boolean rejectsByRelationshipWhiteList(int type) {
+        return hasRelationshipWhiteList && !relationshipWhiteList.get(type);
+    }
+
+    /**
+     * True when no label list is configured, so candidates can be accepted without looking at their labels.
+     */
+    boolean acceptsAllNodes() {
+        return !hasNodeWhiteList && nodeBlackList.length == 0;
+    }
+
+    boolean hasNodeWhiteList() {
+        return hasNodeWhiteList;
+    }
+
+    int[] nodeWhiteList() {
+        return nodeWhiteList;
+    }
+
+    int[] nodeBlackList() {
+        return nodeBlackList;
+    }
+
+    boolean acceptsNode(NodeCursor node) {
+        return (!hasNodeWhiteList || hasAnyLabel(node, nodeWhiteList)) && !hasAnyLabel(node, nodeBlackList);
+    }
+
+    /**
+     * True when a rejected node has no label of the white list, false when it only has one of the black list.
+     */
+    boolean rejectsByNodeWhiteList(NodeCursor node) {
+        return hasNodeWhiteList && !hasAnyLabel(node, nodeWhiteList);
+    }
+
+    private static boolean hasAnyLabel(NodeCursor node, int[] labels) {
+        for (int label : labels) {
+            if (node.hasLabel(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int[] resolve(List<String> names, ToIntFunction<String> lookup) {
+        return names.stream()
+                .mapToInt(lookup)
+                .filter(token -> token != TokenConstants.NO_TOKEN)
+                .distinct()
+                .toArray();
+    }
+
+    private static BitSet toBitSet(int[] tokens) {
+        BitSet bitSet = new BitSet();
+        for (int token : tokens) {
+            bitSet.set(token);
+        }
+        return bitSet;
+    }
+}
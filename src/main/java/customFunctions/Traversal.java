@@ -0,0 +1,64 @@
+package customFunctions;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.StatementConstants;
+
+/**
+ * A route search from a root node, reusable for any number of searches, one at a time.
+ */
+interface Traversal extends AutoCloseable {
+
+    /**
+     * @param terminalNodeId id of the node ending the route, or {@link StatementConstants#NO_SUCH_NODE} when there is none
+     */
+    TraversalPath traverse(long rootNodeId, long terminalNodeId);
+
+    /**
+     * Searches a route ending at any node of the set. Checking a neighbour against the set is a single lookup,
+     * however large it is.
+     *
+     * @throws IllegalArgumentException when the algorithm needs a single terminal node
+     */
+    TraversalPath traverse(long rootNodeId, LongSet terminalNodeIds);
+
+    /**
+     * Starts a search whose hops are handed out as they are found. Only a walk that settles its route hop by hop
+     * can do so; by default the whole route is searched first.
+     *
+     * @param terminalNodeId id of the node ending the route, or {@link StatementConstants#NO_SUCH_NODE} when there is none
+     */
+    default Hops hops(long rootNodeId, long terminalNodeId) {
+        return Hops.of(traverse(rootNodeId, terminalNodeId));
+    }
+
+    /**
+     * The work of the walks since the counters were last drained by {@link TraversalMetrics#record}.
+     */
+    TraversalCounters counters();
+
+    /**
+     * The profile of the walks with config {@code profile: true}, or null.
+     */
+    TraversalProfile profile();
+
+    @Override
+    void close();
+
+    /**
+     * Creates the traversal selected by {@link TraversalConfig#algorithm}.
+     */
+    static Traversal create(KernelTransaction ktx, String property, TraversalConfig config) {
+        switch (config.algorithm) {
+            case OPTIMAL:
+                return new OptimalTraversal(ktx, property, config);
+            case BIDIRECTIONAL:
+                return new BidirectionalTraversal(ktx, property, config);
+            case BEAM:
+                return new BeamTraversal(ktx, property, config);
+            case GREEDY:
+            default:
+                return new GreedyTraversal(ktx, property, config);
+        }
+    }
+}
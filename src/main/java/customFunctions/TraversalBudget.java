@@ -0,0 +1,57 @@
+package customFunctions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code maxVisited} and {@code timeoutMs} limits of one traversal, spent one node expansion at a time. The
+ * optimal search also spends it on every partial route it queues, so the routes it holds between expansions are
+ * bounded too.
+ * <p>
+ * Every traversal asks the budget before it expands a node and ends as soon as the budget says no, so a
+ * runaway search stops within one expansion of the limit instead of finishing its walk first. The clock is
+ * only read when a timeout is configured. The budget restarts with every {@link Traversal#traverse} call, so
+ * in a batch each pair gets the full budget.
+ */
+class TraversalBudget {
+
+    private final long maxVisited;
+    private final long timeoutNanos;
+    private long visited;
+    private long deadline;
+    private TraversalPath.Outcome exceeded;
+
+    TraversalBudget(TraversalConfig config) {
+        this.maxVisited = config.maxVisited;
+        this.timeoutNanos = config.timeoutMs == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(config.timeoutMs);
+    }
+
+    void start() {
+        visited = 0;
+        exceeded = null;
+        if (timeoutNanos != Long.MAX_VALUE) {
+            deadline = System.nanoTime() + timeoutNanos;
+        }
+    }
+
+    /**
+     * Accounts for one more node expansion or queued route, returns false when that would exceed a limit.
+     */
+    boolean spend() {
+        if (++visited > maxVisited) {
+            exceeded = TraversalPath.Outcome.MAX_VISITED_EXCEEDED;
+            return false;
+        }
+        if (timeoutNanos != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            exceeded = TraversalPath.Outcome.TIMED_OUT;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The limit that ended the traversal, or null while the budget lasts.
+     */
+    TraversalPath.Outcome exceeded() {
+        return exceeded;
+    }
+}
@@ -0,0 +1,244 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The caches one database shares between the greedy walks with {@code cache: true}: the {@link BestChildCache}
+ * of single decisions and the {@link SuffixMemo} of whole routes to the terminal. It also holds the
+ * {@link BestChildIndex} of each property one was built for, which every greedy walk on that property uses.
+ * <p>
+ * They are registered by {@link TraversalCachesExtensionFactory} together with a {@link TransactionEventListener}.
+ * Before a transaction commits, the listener collects every node whose best child it may change: the start node
+ * of each created or deleted relationship or of one whose properties change, which a {@code score} may read, and the
+ * parents of each node whose properties or labels change. A change to a node with more parents than are worth
+ * collecting in the committing transaction drops every entry instead.
+ * After the commit the caches and indexes drop what depends on those nodes. The caches only store what a walk read of
+ * a node while no commit changed the node since, so an entry read before a concurrent commit never outlives it.
+ */
+class TraversalCaches {
+
+    private static final Map<String, TraversalCaches> CACHES = new ConcurrentHashMap<>();
+    /**
+     * Collected instead of the changed nodes by commits made while no cache or index is in use, never modified.
+     */
+    private static final LongHashSet UNUSED = new LongHashSet();
+    /**
+     * A commit changing the properties or labels of a node with more incoming relationships than this drops every
+     * entry, instead of making the writer iterate them all to collect the parents.
+     */
+    private static final int MAX_COLLECTED_PARENTS = 1000;
+
+    final BestChildCache bestChildren;
+    final SuffixMemo suffixes;
+    private final Map<String, BestChildIndex> bestChildIndexes = new ConcurrentHashMap<>();
+    private final Set<BestChildIndex> buildingIndexes = ConcurrentHashMap.newKeySet();
+
+    TraversalCaches(int capacity) {
+        this.bestChildren = new BestChildCache(capacity);
+        this.suffixes = new SuffixMemo(capacity);
+    }
+
+    /**
+     * The caches of the database, or null when the extension is not loaded and entries cannot be invalidated.
+     */
+    static TraversalCaches forDatabase(String databaseName) {
+        return CACHES.get(databaseName);
+    }
+
+    static void register(String databaseName, TraversalCaches caches) {
+        CACHES.put(databaseName, caches);
+    }
+
+    static void unregister(String databaseName) {
+        CACHES.remove(databaseName);
+    }
+
+    /**
+     * The index of the property, or null when none was built.
+     */
+    BestChildIndex bestChildIndex(String property) {
+        return bestChildIndexes.get(property);
+    }
+
+    /**
+     * Makes commits invalidate the index while it is being built, without any walk using it yet. The previous index
+     * of its property keeps serving walks until {@link #register} replaces it.
+     */
+    void startBuilding(BestChildIndex index) {
+        buildingIndexes.add(index);
+    }
+
+    /**
+     * Makes the built index the one of its property, replacing any previous one.
+     */
+    void register(BestChildIndex index) {
+        bestChildIndexes.put(index.property(), index);
+        buildingIndexes.remove(index);
+    }
+
+    /**
+     * Forgets an index whose build failed, leaving the previous index of its property in place.
+     */
+    void abandon(BestChildIndex index) {
+        buildingIndexes.remove(index);
+    }
+
+    /**
+     * Drops the index of the property, returns it or null when none was built.
+     */
+    BestChildIndex dropBestChildIndex(String property) {
+        return bestChildIndexes.remove(property);
+    }
+
+    Collection<BestChildIndex> bestChildIndexes() {
+        return bestChildIndexes.values();
+    }
+
+    TransactionEventListener<LongHashSet> listener() {
+        return new Invalidator();
+    }
+
+    /**
+     * What an entry depends on besides the node: the terminal node, which the walk takes regardless of the
+     * filters, the property and the filters.
+     */
+    static final class Signature {
+        private final long terminalNodeId;
+        private final String filters;
+
+        Signature(long terminalNodeId, String filters) {
+            this.terminalNodeId = terminalNodeId;
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) o;
+            return terminalNodeId == other.terminalNodeId && filters.equals(other.filters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(terminalNodeId, filters);
+        }
+    }
+
+    /**
+     * True once a walk used a cache or an index was registered, from then on commits have to invalidate entries.
+     */
+    private boolean used() {
+        return bestChildren.used() || suffixes.used() || !bestChildIndexes.isEmpty() || !buildingIndexes.isEmpty();
+    }
+
+    /**
+     * Collects the nodes whose entries a transaction may invalidate while it can still read them, and drops
+     * those entries once it has committed. A null set drops every entry; {@link #UNUSED} drops nothing, unless the
+     * caches came into use while the transaction committed.
+     */
+    private final class Invalidator implements TransactionEventListener<LongHashSet> {
+
+        @Override
+        public LongHashSet beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+            // once used, a walk may be about to store what it read, so the nodes are collected even when it is empty
+            if (!used()) {
+                return UNUSED;
+            }
+            LongHashSet nodeIds = new LongHashSet();
+            for (Relationship relationship : data.createdRelationships()) {
+                nodeIds.add(relationship.getStartNodeId());
+            }
+            for (Relationship relationship : data.deletedRelationships()) {
+                nodeIds.add(relationship.getStartNodeId());
+            }
+            for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+                nodeIds.add(entry.entity().getStartNodeId());
+            }
+            for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+                nodeIds.add(entry.entity().getStartNodeId());
+            }
+            for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+                if (!addParents(data, entry.entity(), nodeIds)) {
+                    return null;
+                }
+            }
+            for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+                if (!addParents(data, entry.entity(), nodeIds)) {
+                    return null;
+                }
+            }
+            for (LabelEntry entry : data.assignedLabels()) {
+                if (!addParents(data, entry.node(), nodeIds)) {
+                    return null;
+                }
+            }
+            for (LabelEntry entry : data.removedLabels()) {
+                if (!addParents(data, entry.node(), nodeIds)) {
+                    return null;
+                }
+            }
+            return nodeIds;
+        }
+
+        /**
+         * Adds the parents of the node, returns false without adding them when it has more than
+         * {@link #MAX_COLLECTED_PARENTS}, so the commit drops every entry instead.
+         */
+        private boolean addParents(TransactionData data, Node node, LongHashSet nodeIds) {
+            if (data.isDeleted(node)) {
+                return true;
+            }
+            // the degree of a dense node is read from its relationship groups, without iterating its relationships
+            if (node.getDegree(Direction.INCOMING) > MAX_COLLECTED_PARENTS) {
+                return false;
+            }
+            for (Relationship relationship : node.getRelationships(Direction.INCOMING)) {
+                nodeIds.add(relationship.getStartNodeId());
+            }
+            return true;
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, LongHashSet nodeIds, GraphDatabaseService databaseService) {
+            if (nodeIds == UNUSED) {
+                if (!used()) {
+                    return;
+                }
+                // a walk that started during the commit may have read what it changed, which was not collected
+                nodeIds = null;
+            }
+            bestChildren.invalidate(nodeIds);
+            suffixes.invalidate(nodeIds);
+            for (BestChildIndex index : bestChildIndexes.values()) {
+                index.invalidate(nodeIds);
+            }
+            for (BestChildIndex index : buildingIndexes) {
+                index.invalidate(nodeIds);
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, LongHashSet nodeIds, GraphDatabaseService databaseService) {
+        }
+    }
+}
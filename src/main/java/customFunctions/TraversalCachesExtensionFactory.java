@@ -0,0 +1,61 @@
+package customFunctions;
+
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.extension.ExtensionFactory;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.context.ExtensionContext;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+/**
+ * Gives every user database its {@link TraversalCaches} and keeps them in sync with committed writes for as long as the
+ * database runs, and drops its {@link GraphProjection}s and {@link TraversalMetrics} when it stops. Loaded by Neo4j through {@code META-INF/services}.
+ */
+public class TraversalCachesExtensionFactory extends ExtensionFactory<TraversalCachesExtensionFactory.Dependencies> {
+
+    /**
+     * Entries each cache keeps, for all nodes and signatures together, before evicting the least recently used.
+     */
+    static final int DEFAULT_CAPACITY = 100_000;
+
+    public interface Dependencies {
+        GraphDatabaseAPI graphDatabaseAPI();
+
+        DatabaseManagementService databaseManagementService();
+    }
+
+    public TraversalCachesExtensionFactory() {
+        super(ExtensionType.DATABASE, "customTraversalCaches");
+    }
+
+    @Override
+    public Lifecycle newInstance(ExtensionContext context, Dependencies dependencies) {
+        String databaseName = dependencies.graphDatabaseAPI().databaseName();
+        DatabaseManagementService managementService = dependencies.databaseManagementService();
+        if (GraphDatabaseSettings.SYSTEM_DATABASE_NAME.equals(databaseName)) {
+            return new LifecycleAdapter();
+        }
+        return new LifecycleAdapter() {
+            private TransactionEventListener<?> listener;
+
+            @Override
+            public void start() {
+                TraversalCaches caches = new TraversalCaches(DEFAULT_CAPACITY);
+                listener = caches.listener();
+                managementService.registerTransactionEventListener(databaseName, listener);
+                TraversalCaches.register(databaseName, caches);
+            }
+
+            @Override
+            public void stop() {
+                TraversalCaches.unregister(databaseName);
+                GraphProjection.dropAll(databaseName);
+                TraversalMetrics.dropAll(databaseName);
+                managementService.unregisterTransactionEventListener(databaseName, listener);
+            }
+        };
+    }
+}
@@ -0,0 +1,211 @@
+package customFunctions;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Options of a traversal call, parsed once from the procedure's config map.
+ */
+class TraversalConfig {
+
+    /**
+     * What the walk does when the best child has already been visited.
+     */
+    enum OnVisited {
+        /** End the walk, the best route would loop. */
+        STOP,
+        /** Continue with the best child that has not been visited yet. */
+        FALLBACK
+    }
+
+    /**
+     * How the route is searched, see {@link Traversal#create}.
+     */
+    enum Algorithm {
+        GREEDY,
+        OPTIMAL,
+        BIDIRECTIONAL,
+        /** Keeps the {@code beamWidth} best partial routes of each depth, see {@link BeamTraversal}. */
+        BEAM
+    }
+
+    /**
+     * Which values of the property make a child better: the highest or the lowest.
+     */
+    enum Order {
+        MAX,
+        MIN
+    }
+
+    /**
+     * How the {@code optimal} algorithm scores a route from the values of its nodes.
+     */
+    enum Aggregate {
+        SUM,
+        MIN
+    }
+
+    /**
+     * More workers than processors only wait for each other, so a larger {@code concurrency} is lowered to this.
+     */
+    static final int MAX_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Upper bound of {@code beamWidth} and {@code k}: a search keeps that many routes per depth, or in total, in arrays.
+     */
+    static final int MAX_ROUTES = 1 << 16;
+
+    /**
+     * Projections larger than this many bytes are refused unless {@code maxBytes} allows them: half of the heap.
+     */
+    static final long DEFAULT_MAX_BYTES = Runtime.getRuntime().maxMemory() / 2;
+
+    final long maxDepth;
+    final List<String> nodeWhiteList;
+    final List<String> nodeBlackList;
+    final List<String> relationshipWhiteList;
+    final List<String> relationshipBlackList;
+    final List<PropertyPredicate> nodePredicates;
+    final List<PropertyPredicate> relationshipPredicates;
+    final OnVisited onVisited;
+    final int concurrency;
+    final Algorithm algorithm;
+    final Aggregate aggregate;
+    final int beamWidth;
+    final int k;
+    final long maxVisited;
+    final long timeoutMs;
+    final boolean includeValues;
+    final boolean cache;
+    final Order order;
+    final String rootLabel;
+    final String terminalLabel;
+    final boolean profile;
+    final ScoreExpression score;
+    final long maxBytes;
+
+    private TraversalConfig(Map<String, Object> config) {
+        this.maxDepth = (!config.isEmpty() && config.containsKey("maxDepth")) ? (long) config.get("maxDepth") : Long.MAX_VALUE;
+        this.nodeWhiteList = extractListFromConfig(config, "nodes", "whiteList");
+        this.nodeBlackList = extractListFromConfig(config, "nodes", "blackList");
+        this.relationshipWhiteList = extractListFromConfig(config, "relationships", "whiteList");
+        this.relationshipBlackList = extractListFromConfig(config, "relationships", "blackList");
+        this.nodePredicates = extractPredicatesFromConfig(config, "nodes");
+        this.relationshipPredicates = extractPredicatesFromConfig(config, "relationships");
+        this.onVisited = extractEnumFromConfig(config, "onVisited", OnVisited.class, OnVisited.STOP);
+        this.concurrency = (int) Math.min(extractPositiveLongFromConfig(config, "concurrency", 1), MAX_CONCURRENCY);
+        this.algorithm = extractEnumFromConfig(config, "algorithm", Algorithm.class, Algorithm.GREEDY);
+        this.aggregate = extractEnumFromConfig(config, "aggregate", Aggregate.class, Aggregate.SUM);
+        this.beamWidth = (int) extractBoundedLongFromConfig(config, "beamWidth", 3, MAX_ROUTES);
+        this.k = (int) extractBoundedLongFromConfig(config, "k", 3, MAX_ROUTES);
+        this.maxVisited = extractPositiveLongFromConfig(config, "maxVisited", Long.MAX_VALUE);
+        this.timeoutMs = extractPositiveLongFromConfig(config, "timeoutMs", Long.MAX_VALUE);
+        this.includeValues = extractBooleanFromConfig(config, "includeValues", false);
+        this.cache = extractBooleanFromConfig(config, "cache", false);
+        this.order = extractEnumFromConfig(config, "order", Order.class, Order.MAX);
+        this.rootLabel = extractStringFromConfig(config, "rootLabel");
+        this.terminalLabel = extractStringFromConfig(config, "terminalLabel");
+        this.profile = extractBooleanFromConfig(config, "profile", false);
+        String score = extractStringFromConfig(config, "score");
+        this.score = score == null ? null : ScoreExpression.parse(score);
+        this.maxBytes = extractPositiveLongFromConfig(config, "maxBytes", DEFAULT_MAX_BYTES);
+    }
+
+    static TraversalConfig of(Map<String, Object> config) {
+        return new TraversalConfig(config);
+    }
+
+    private static long extractPositiveLongFromConfig(Map<String, Object> config, String key, long defaultValue) {
+        if (config.isEmpty() || !config.containsKey(key)) {
+            return defaultValue;
+        }
+        long value = (long) config.get(key);
+        if (value < 1) {
+            throw new IllegalArgumentException("Config option '" + key + "' must be at least 1, got " + value);
+        }
+        return value;
+    }
+
+    private static long extractBoundedLongFromConfig(Map<String, Object> config, String key, long defaultValue, long maxValue) {
+        long value = extractPositiveLongFromConfig(config, key, defaultValue);
+        if (value > maxValue) {
+            throw new IllegalArgumentException("Config option '" + key + "' must be at most " + maxValue + ", got " + value);
+        }
+        return value;
+    }
+
+    /**
+     * True when the {@code nodes} or {@code relationships} config has {@code where} predicates.
+     */
+    boolean hasPropertyPredicates() {
+        return !nodePredicates.isEmpty() || !relationshipPredicates.isEmpty();
+    }
+
+    /**
+     * The property, the score expression, the order and the node and relationship filters as one string, equal for calls that rank
+     * the same children the same way.
+     */
+    String filterSignature(String property) {
+        return property + '|' + score + '|' + order + new TreeSet<>(nodeWhiteList) + new TreeSet<>(nodeBlackList)
+                + new TreeSet<>(relationshipWhiteList) + new TreeSet<>(relationshipBlackList)
+                + nodePredicates + relationshipPredicates;
+    }
+
+    private static boolean extractBooleanFromConfig(Map<String, Object> config, String key, boolean defaultValue) {
+        if (config.isEmpty() || !config.containsKey(key)) {
+            return defaultValue;
+        }
+        return (boolean) config.get(key);
+    }
+
+    private static String extractStringFromConfig(Map<String, Object> config, String key) {
+        if (config.isEmpty() || !config.containsKey(key)) {
+            return null;
+        }
+        return (String) config.get(key);
+    }
+
+    private static <E extends Enum<E>> E extractEnumFromConfig(Map<String, Object> config, String key, Class<E> type, E defaultValue) {
+        if (config.isEmpty() || !config.containsKey(key)) {
+            return defaultValue;
+        }
+        String value = (String) config.get(key);
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported value '" + value + "' for config option '" + key + "'");
+        }
+    }
+
+    private static List<PropertyPredicate> extractPredicatesFromConfig(Map<String, Object> config, String type) {
+        if (config.isEmpty() || !config.containsKey(type)) {
+            return Collections.emptyList();
+        }
+        Map<String, Object> map = (Map<String, Object>) config.get(type);
+        if (!map.containsKey("where")) {
+            return Collections.emptyList();
+        }
+        return PropertyPredicate.parseAll((Map<String, Object>) map.get("where"));
+    }
+
+    private static List<String> extractListFromConfig(Map<String, Object> config, String type, String list) {
+        if (!config.isEmpty() && config.containsKey(type)) {
+            Map<String, Object> map = (Map<String, Object>) config.get(type);
+            if (map.containsKey(list)) {
+                Object x = map.get(list);
+                if (x instanceof List) {
+                    return (List<String>) x;
+                } else {
+                    return Collections.singletonList((String) x);
+                }
+            } else {
+                return Collections.emptyList();
+            }
+        } else {
+            return Collections.emptyList();
+        }
+    }
+}
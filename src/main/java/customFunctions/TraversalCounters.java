@@ -0,0 +1,22 @@
+package customFunctions;
+
+/**
+ * The work of the walks of one {@link Traversal} since the counters were last drained, counted in plain fields by the
+ * single thread walking, so counting a relationship costs one increment. {@link TraversalMetrics} drains them into
+ * shared counters once per walk.
+ */
+class TraversalCounters {
+
+    /** Relationships read from the store, or from a projection. */
+    long relationships;
+    /** Relationships or neighbours rejected by the relationship type or label lists. */
+    long rejections;
+    /** Neighbours passing the lists whose property is missing or not a number. */
+    long propertyMisses;
+
+    void reset() {
+        relationships = 0;
+        rejections = 0;
+        propertyMisses = 0;
+    }
+}
@@ -0,0 +1,235 @@
+package customFunctions;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * What the traversals of one procedure on one property of a database cost: calls, hops, relationships read, filter
+ * rejections, property misses and the latency of the calls.
+ * <p>
+ * Walks count their work in the plain fields of their {@link TraversalCounters} and are recorded once when they end,
+ * into {@link LongAdder}s striped across threads, so concurrent calls do not contend on a shared counter. Latencies
+ * go into a histogram of power of two buckets, which gives percentiles within a factor of two at the cost of one
+ * increment per call.
+ * <p>
+ * The metrics are read through {@code custom.traversalStats} and, as {@link TraversalStatsMBean}s, through JMX under
+ * {@code customFunctions:type=TraversalStats}; both can reset them. They are dropped when the database stops.
+ */
+class TraversalMetrics implements TraversalStatsMBean {
+
+    private static final Map<List<String>, TraversalMetrics> METRICS = new ConcurrentHashMap<>();
+    private static final int BUCKETS = 64;
+
+    private final String database;
+    private final String procedure;
+    private final String property;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hops = new LongAdder();
+    private final LongAdder relationships = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder propertyMisses = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder[] latencies = new LongAdder[BUCKETS];
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private ObjectName objectName;
+
+    private TraversalMetrics(String database, String procedure, String property) {
+        this.database = database;
+        this.procedure = procedure;
+        this.property = property;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            latencies[bucket] = new LongAdder();
+        }
+    }
+
+    /**
+     * The metrics of the procedure and property, created and registered with JMX on first use.
+     */
+    static TraversalMetrics of(String database, String procedure, String property) {
+        return METRICS.computeIfAbsent(List.of(database, procedure, property), key -> {
+            TraversalMetrics metrics = new TraversalMetrics(database, procedure, property);
+            metrics.register();
+            return metrics;
+        });
+    }
+
+    static Collection<TraversalMetrics> all(String database) {
+        return METRICS.values().stream()
+                .filter(metrics -> metrics.database.equals(database))
+                .collect(Collectors.toList());
+    }
+
+    static void resetAll(String database) {
+        all(database).forEach(TraversalMetrics::reset);
+    }
+
+    /**
+     * Drops the metrics of the database and unregisters them from JMX.
+     */
+    static void dropAll(String database) {
+        for (TraversalMetrics metrics : all(database)) {
+            METRICS.remove(List.of(database, metrics.procedure, metrics.property));
+            metrics.unregister();
+        }
+    }
+
+    /**
+     * Records a walk of the given number of hops, draining its counters.
+     */
+    void record(long walkedHops, TraversalCounters counters, long nanos) {
+        calls.increment();
+        hops.add(walkedHops);
+        relationships.add(counters.relationships);
+        rejections.add(counters.rejections);
+        propertyMisses.add(counters.propertyMisses);
+        counters.reset();
+        totalNanos.add(nanos);
+        latencies[bucket(nanos)].increment();
+        maxNanos.accumulate(nanos);
+    }
+
+    void record(TraversalPath path, TraversalCounters counters, long nanos) {
+        record(path.relationshipIds.size(), counters, nanos);
+    }
+
+    /**
+     * Bucket {@code b} holds the latencies from {@code 2^(b-1)} up to {@code 2^b - 1} nanoseconds, bucket 0 holds 0.
+     */
+    private static int bucket(long nanos) {
+        return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    private void register() {
+        try {
+            objectName = new ObjectName("customFunctions:type=TraversalStats"
+                    + ",database=" + ObjectName.quote(database)
+                    + ",procedure=" + ObjectName.quote(procedure)
+                    + ",property=" + ObjectName.quote(property));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new StandardMBean(this, TraversalStatsMBean.class), objectName);
+        } catch (JMException e) {
+            // the metrics are still available through custom.traversalStats
+            objectName = null;
+        }
+    }
+
+    private void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            // already unregistered
+        }
+    }
+
+    /**
+     * The upper bound of the bucket holding the given share of the calls, at most the slowest call.
+     */
+    private long percentile(double share) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = latencies[bucket].sum();
+            total += counts[bucket];
+        }
+        long rank = (long) Math.ceil(share * total);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank && seen > 0) {
+                long upperBound = bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+                return Math.min(upperBound, getMaxNanos());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String getDatabase() {
+        return database;
+    }
+
+    @Override
+    public String getProcedure() {
+        return procedure;
+    }
+
+    @Override
+    public String getProperty() {
+        return property;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getHops() {
+        return hops.sum();
+    }
+
+    @Override
+    public long getRelationships() {
+        return relationships.sum();
+    }
+
+    @Override
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    @Override
+    public long getPropertyMisses() {
+        return propertyMisses.sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        hops.reset();
+        relationships.reset();
+        rejections.reset();
+        propertyMisses.reset();
+        totalNanos.reset();
+        for (LongAdder latency : latencies) {
+            latency.reset();
+        }
+        maxNanos.reset();
+    }
+}
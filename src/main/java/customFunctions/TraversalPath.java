@@ -0,0 +1,84 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ids of the hops chosen by a {@link Traversal}, in walk order, together with the reason the walk ended.
+ */
+class TraversalPath {
+
+    enum Outcome {
+        TERMINAL_REACHED(null),
+        NO_CANDIDATE(null),
+        ALREADY_VISITED(null),
+        MAX_DEPTH_EXCEEDED("maxDepth"),
+        MAX_VISITED_EXCEEDED("maxVisited"),
+        TIMED_OUT("timeoutMs");
+
+        /** The config option whose limit ended the walk, null when no limit was hit. */
+        final String limit;
+
+        Outcome(String limit) {
+            this.limit = limit;
+        }
+    }
+
+    final long rootNodeId;
+    final LongArrayList relationshipIds = new LongArrayList();
+    final LongArrayList nodeIds = new LongArrayList();
+    Outcome outcome;
+
+    TraversalPath(long rootNodeId) {
+        this.rootNodeId = rootNodeId;
+    }
+
+    void add(long relationshipId, long nodeId) {
+        relationshipIds.add(relationshipId);
+        nodeIds.add(nodeId);
+    }
+
+    List<Relationship> relationships(InternalTransaction tx) {
+        List<Relationship> relationships = new ArrayList<>(relationshipIds.size());
+        for (int i = 0; i < relationshipIds.size(); i++) {
+            relationships.add(tx.newRelationshipEntity(relationshipIds.get(i)));
+        }
+        return relationships;
+    }
+
+    /**
+     * The ids of the root node and of the nodes reached by each hop.
+     */
+    List<Long> routeNodeIds() {
+        List<Long> ids = new ArrayList<>(nodeIds.size() + 1);
+        ids.add(rootNodeId);
+        for (int i = 0; i < nodeIds.size(); i++) {
+            ids.add(nodeIds.get(i));
+        }
+        return ids;
+    }
+
+    List<Long> routeRelationshipIds() {
+        List<Long> ids = new ArrayList<>(relationshipIds.size());
+        for (int i = 0; i < relationshipIds.size(); i++) {
+            ids.add(relationshipIds.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * The nodes reached by each hop, excluding the root node.
+     */
+    List<Node> nodes(InternalTransaction tx) {
+        List<Node> nodes = new ArrayList<>(nodeIds.size());
+        for (int i = 0; i < nodeIds.size(); i++) {
+            nodes.add(tx.newNodeEntity(nodeIds.get(i)));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,185 @@
+package customFunctions;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.neo4j.internal.kernel.api.KernelReadTracer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What one call with {@code profile: true} did: the relationships read at each expanded node, why neighbours were
+ * rejected, the db hits of its cursors and the time it took.
+ * <p>
+ * Only a profiled call creates one. Its {@link NeighbourCursor} then registers it as the {@link KernelReadTracer} of
+ * its cursors, which count a db hit for every node, relationship and property they read, the way Cypher's
+ * {@code PROFILE} does, and reports expansions and rejections to it. Unprofiled calls have no tracer on their
+ * cursors and only pay a null check per expansion and per rejection.
+ * <p>
+ * A greedy walk answered by the {@link BestChildIndex} reads no relationships, so such an expansion is listed with the
+ * outgoing degree the index stored for the node and counted as an index hit. Profiled walks bypass the
+ * {@link BestChildCache} and the {@link SuffixMemo}, which store no degrees, and expand every node.
+ */
+class TraversalProfile implements KernelReadTracer {
+
+    /** Expansions whose relationships are listed; later ones are only counted. */
+    static final int MAX_LISTED_EXPANSIONS = 1000;
+
+    private final LongArrayList degrees = new LongArrayList();
+    private long expansions;
+    private long indexHits;
+    private boolean expanding;
+    private long relationshipsBeforeExpansion;
+    private long relationships;
+    private long dbHits;
+    private long typeWhiteList;
+    private long typeBlackList;
+    private long labelWhiteList;
+    private long labelBlackList;
+    private long nodeProperty;
+    private long relationshipProperty;
+    private long missingProperty;
+    private long elapsedNanos;
+
+    /**
+     * Starts an expansion, given the relationships read by the cursor so far.
+     */
+    void expanding(long relationshipsRead) {
+        expanded(relationshipsRead);
+        expansions++;
+        expanding = true;
+        relationshipsBeforeExpansion = relationshipsRead;
+    }
+
+    /**
+     * Counts an expansion answered by the best child index, given the relationships read by the cursor so far and
+     * the degree the index stored for the node.
+     */
+    void expandedFromIndex(long relationshipsRead, int degree) {
+        expanded(relationshipsRead);
+        expansions++;
+        indexHits++;
+        if (degrees.size() < MAX_LISTED_EXPANSIONS) {
+            degrees.add(degree);
+        }
+    }
+
+    private void expanded(long relationshipsRead) {
+        if (expanding && degrees.size() < MAX_LISTED_EXPANSIONS) {
+            degrees.add(relationshipsRead - relationshipsBeforeExpansion);
+        }
+        expanding = false;
+    }
+
+    /**
+     * @param byWhiteList true when the type is not on the white list, false when it is on the black list
+     */
+    void rejectedType(boolean byWhiteList) {
+        if (byWhiteList) {
+            typeWhiteList++;
+        } else {
+            typeBlackList++;
+        }
+    }
+
+    /**
+     * @param byWhiteList true when the node has no label of the white list, false when it has one of the black list
+     */
+    void rejectedLabels(boolean byWhiteList) {
+        if (byWhiteList) {
+            labelWhiteList++;
+        } else {
+            labelBlackList++;
+        }
+    }
+
+    /**
+     * @param ofNode true when the node failed a {@code where} predicate, false when the relationship did
+     */
+    void rejectedProperties(boolean ofNode) {
+        if (ofNode) {
+            nodeProperty++;
+        } else {
+            relationshipProperty++;
+        }
+    }
+
+    void missedProperty() {
+        missingProperty++;
+    }
+
+    /**
+     * Ends the profile of a walk, given the counters of its traversal before they are drained.
+     */
+    void finish(TraversalCounters counters, long nanos) {
+        expanded(counters.relationships);
+        relationships = counters.relationships;
+        elapsedNanos = nanos;
+    }
+
+    /**
+     * The profile as the map returned in the {@code profile} column.
+     */
+    Map<String, Object> toMap() {
+        Map<String, Object> rejected = new LinkedHashMap<>();
+        rejected.put("typeWhiteList", typeWhiteList);
+        rejected.put("typeBlackList", typeBlackList);
+        rejected.put("labelWhiteList", labelWhiteList);
+        rejected.put("labelBlackList", labelBlackList);
+        rejected.put("relationshipProperty", relationshipProperty);
+        rejected.put("nodeProperty", nodeProperty);
+        rejected.put("missingProperty", missingProperty);
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("elapsedNanos", elapsedNanos);
+        profile.put("dbHits", dbHits);
+        profile.put("relationships", relationships);
+        profile.put("expansions", expansions);
+        profile.put("indexHits", indexHits);
+        List<Long> listedDegrees = new ArrayList<>(degrees.size());
+        degrees.forEach(listedDegrees::add);
+        profile.put("degrees", listedDegrees);
+        profile.put("rejected", rejected);
+        return profile;
+    }
+
+    @Override
+    public void onNode(long nodeReference) {
+        dbHits++;
+    }
+
+    @Override
+    public void onAllNodesScan() {
+        dbHits++;
+    }
+
+    @Override
+    public void onLabelScan(int label) {
+        dbHits++;
+    }
+
+    @Override
+    public void onRelationshipTypeScan(int type) {
+        dbHits++;
+    }
+
+    @Override
+    public void onIndexSeek() {
+        dbHits++;
+    }
+
+    @Override
+    public void onRelationship(long relationshipReference) {
+        dbHits++;
+    }
+
+    @Override
+    public void onProperty(int propertyKey) {
+        dbHits++;
+    }
+
+    @Override
+    public void dbHit() {
+        dbHits++;
+    }
+}
@@ -0,0 +1,34 @@
+package customFunctions;
+
+/**
+ * The metrics of one procedure and property of a database, as registered with the platform MBean server under
+ * {@code customFunctions:type=TraversalStats}. See {@link TraversalMetrics}.
+ */
+public interface TraversalStatsMBean {
+
+    String getDatabase();
+
+    String getProcedure();
+
+    String getProperty();
+
+    long getCalls();
+
+    long getHops();
+
+    long getRelationships();
+
+    long getRejections();
+
+    long getPropertyMisses();
+
+    long getTotalNanos();
+
+    long getP50Nanos();
+
+    long getP99Nanos();
+
+    long getMaxNanos();
+
+    void reset();
+}
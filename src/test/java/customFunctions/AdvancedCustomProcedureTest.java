@@ -2,15 +2,20 @@ package customFunctions;
 
 import org.junit.jupiter.api.*;
 import org.neo4j.driver.*;
+import org.neo4j.driver.exceptions.ClientException;
 import org.neo4j.driver.types.Node;
 import org.neo4j.driver.types.Relationship;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
 import utilities.Rel;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 class AdvancedCustomProcedureTest {
@@ -152,6 +157,19 @@ class AdvancedCustomProcedureTest {
             Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
             Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
         }
+
+        @Test
+        void test_with_white_list_of_an_unknown_label_only_the_root_is_returned() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {nodes: {whiteList: 'Unknown'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(0, getRelationshipList(result).size());
+            Assertions.assertEquals(1, getNodeMap(result).size());
+        }
     }
 
     @DisplayName("Test Node Black List Scenarios")
@@ -399,21 +417,1808 @@ class AdvancedCustomProcedureTest {
             Assertions.assertEquals(0, result.get("nodes").asMap().size());
             Assertions.assertEquals(0, result.get("relationships").asList().size());
         }
+
+        @Test
+        void test_with_a_max_depth_less_than_the_path_length_reports_the_limit() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {maxDepth: 3, relationships: {whiteList: 'RELATION'}}) yield limit " +
+                    "return limit ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals("maxDepth", result.get("limit").asString());
+        }
     }
 
-    private List<Relationship> getRelationshipList(Record record) {
-        return record.get("relationships").asList(Value::asRelationship);
+    @DisplayName("Test Budget Scenarios")
+    @Nested
+    class TestBudgetScenarios {
+        @Test
+        void test_with_enough_visits_to_reach_the_terminal() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {maxVisited: 4, relationships: {whiteList: 'RELATION'}}) yield relationships, nodes, limit " +
+                    "return relationships, nodes, limit ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+            Assertions.assertTrue(result.get("limit").isNull());
+        }
+
+        @Test
+        void test_with_too_few_visits_to_reach_the_terminal() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {maxVisited: 3, relationships: {whiteList: 'RELATION'}}) yield relationships, nodes, limit " +
+                    "return relationships, nodes, limit ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(0, getRelationshipList(result).size());
+            Assertions.assertEquals(0, getNodeMap(result).size());
+            Assertions.assertEquals("maxVisited", result.get("limit").asString());
+        }
+
+        @Test
+        void test_optimal_search_with_too_few_visits_to_reach_the_terminal() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'optimal', maxVisited: 2}) yield relationships, limit " +
+                    "return relationships, limit ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(0, getRelationshipList(result).size());
+            Assertions.assertEquals("maxVisited", result.get("limit").asString());
+        }
+
+        @Test
+        void test_timeout_ends_a_long_walk() {
+            createChain(20000);
+            String cypher = "match (a:Chain {idx: 1}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {timeoutMs: 1}) yield relationships, limit " +
+                    "return relationships, limit ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(0, getRelationshipList(result).size());
+            Assertions.assertEquals("timeoutMs", result.get("limit").asString());
+        }
+
+        @Test
+        void test_with_a_budget_below_one_is_rejected() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {maxVisited: 0}) yield relationships " +
+                    "return relationships ";
+
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults(cypher));
+        }
     }
 
-    private Map<String, Node> getNodeMap(Record record) {
-        return record.get("nodes").asMap(Value::asNode);
+    @DisplayName("Test Property Value Scenarios")
+    @Nested
+    class TestPropertyValueScenarios {
+        @Test
+        void test_lowest_value_first() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {order: 'min', relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "D", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("D", "E", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("E", "F", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("F", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_route_with_lowest_sum() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'optimal', order: 'min', relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("J", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_floating_point_values() {
+            try (Session session = driver.session()) {
+                session.run("match (n) where n.sens_value is not null set n.sens_value = n.sens_value + 0.5").consume();
+                session.run("match (j:Node {name:'J'}) set j.sens_value = 40.75").consume();
+            }
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("J", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_mixed_integral_and_floating_point_values() {
+            try (Session session = driver.session()) {
+                session.run("match (c:Node {name:'C'}) set c.sens_value = 80.5").consume();
+            }
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'optimal', aggregate: 'min', relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "C", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("C", "K", "RELATION"));
+        }
+
+        @Test
+        void test_integral_values_above_two_to_the_53_do_not_tie() {
+            try (Session session = driver.session()) {
+                session.run("create (r:Root {name:'R'})-[:RELATION]->(p:Node {name:'RP', sens_value: 9007199254740993}) " +
+                        "create (r)-[:RELATION]->(q:Node {name:'RQ', sens_value: 9007199254740992}) " +
+                        "create (t:Terminal {name:'RT'}) " +
+                        "create (p)-[:RELATION]->(t) " +
+                        "create (q)-[:RELATION]->(t)").consume();
+            }
+            String cypher = "match (r:Root {name: 'R'}) " +
+                    "match (t:Terminal {name:'RT'}) " +
+                    "call custom.advancedTraverseGraph(r, t, 'sens_value', {}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
 
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("R", "RP", "RELATION"));
+        }
+
+        @Test
+        void test_value_that_is_not_a_number_does_not_qualify() {
+            try (Session session = driver.session()) {
+                session.run("match (b:Node {name:'B'}) set b.sens_value = 'high'").consume();
+            }
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "C", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("L", "DS", "RELATION"));
+        }
     }
 
-    private List<Rel> getResult(Record record) {
-        Map<String, Node> nodes = getNodeMap(record);
-        List<Relationship> relationships = getRelationshipList(record);
-        return Rel.merge(nodes, relationships);
+    @DisplayName("Test Dense Node Scenarios")
+    @Nested
+    class TestDenseNodeScenarios {
+        @BeforeEach
+        void create_supernode() {
+            try (Session session = driver.session()) {
+                session.run("match (ds:Node {name:'DS'}) " +
+                        "create (hub:Hub {name:'HUB'})-[:RELATION]->(:Node {name:'Y', sens_value: 10})-[:RELATION]->(ds) " +
+                        "with hub " +
+                        "unwind range(1, 200) as i " +
+                        "create (hub)-[:NOISE]->(:Node {name:'N' + i, sens_value: 500 + i})").consume();
+            }
+        }
+
+        @Test
+        void test_white_list_skips_the_other_types() {
+            String cypher = "match (hub:Hub {name: 'HUB'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(hub, ds, 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("HUB", "Y", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("Y", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_black_list_skips_its_types() {
+            String cypher = "match (hub:Hub {name: 'HUB'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(hub, ds, 'sens_value', {algorithm: 'optimal', relationships: {blackList: 'NOISE'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("HUB", "Y", "RELATION"));
+        }
+
+        @Test
+        void test_terminal_is_reached_through_a_rejected_type() {
+            try (Session session = driver.session()) {
+                session.run("match (hub:Hub {name: 'HUB'}) match (ds:Node {name:'DS'}) create (hub)-[:SHORTCUT]->(ds)").consume();
+            }
+            String cypher = "match (hub:Hub {name: 'HUB'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(hub, ds, 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(1, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("HUB", "DS", "SHORTCUT"));
+        }
+
+        @Test
+        void test_bidirectional_search_from_a_supernode() {
+            String cypher = "match (hub:Hub {name: 'HUB'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(hub, ds, 'sens_value', {algorithm: 'bidirectional', relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("HUB", "Y", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("Y", "DS", "RELATION"));
+        }
+    }
+
+    @DisplayName("Test Optimal Algorithm Scenarios")
+    @Nested
+    class TestOptimalAlgorithmScenarios {
+        @Test
+        void test_sum_over_a_chain_of_diamonds_keeps_one_label_per_node() {
+            createDiamonds(24);
+            String cypher = "match (r:Join {idx: 0}) " +
+                    "match (t:Terminal {name:'DT'}) " +
+                    "call custom.advancedTraverseGraph(r, t, 'sens_value', {algorithm: 'optimal', aggregate: 'sum', maxVisited: 1000}) yield relationships, nodes, limit " +
+                    "return relationships, nodes, limit ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertTrue(result.get("limit").isNull());
+            Assertions.assertEquals(49, rel.size());
+            for (int i = 1; i <= 24; i++) {
+                String better = (i % 2 == 0 ? "A" : "B") + i;
+                Assertions.assertEquals(rel.get(2 * i - 2), Rel.of("J" + (i - 1), better, "RELATION"));
+                Assertions.assertEquals(rel.get(2 * i - 1), Rel.of(better, "J" + i, "RELATION"));
+            }
+            Assertions.assertEquals(rel.get(48), Rel.of("J24", "DT", "RELATION"));
+        }
+
+        @Test
+        void test_route_through_a_dominated_label_is_found() {
+            createDetour();
+            String cypher = "match (r:Root {name: 'R'}) " +
+                    "match (t:Terminal {name:'RT'}) " +
+                    "call custom.advancedTraverseGraph(r, t, 'sens_value', {algorithm: 'optimal'}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            List<Rel> rel = getResult(getCypherResults(cypher));
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("R", "RY", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("RY", "RV", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("RV", "RX", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("RX", "RT", "RELATION"));
+        }
+
+        @Test
+        void test_route_with_highest_sum_is_found() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'optimal'}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_route_with_highest_sum_within_max_depth_is_found() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'optimal', maxDepth: 3}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("J", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_route_with_highest_bottleneck_is_found() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'optimal', aggregate: 'min', nodes: {blackList: 'BlackList'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "C", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("C", "K", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("K", "L", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("L", "DS", "RELATION"));
+        }
+    }
+
+    @DisplayName("Test Bidirectional Algorithm Scenarios")
+    @Nested
+    class TestBidirectionalAlgorithmScenarios {
+        @Test
+        void test_shortest_route_is_found() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'bidirectional'}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "X", "BLACK_LIST"));
+            Assertions.assertEquals(rel.get(1), Rel.of("X", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_shortest_route_through_filtered_nodes_is_found() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'bidirectional', nodes: {blackList: 'BlackList'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("J", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_with_a_max_depth_less_than_the_shortest_route() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'bidirectional', maxDepth: 2, nodes: {blackList: 'BlackList'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(0, getNodeMap(result).size());
+            Assertions.assertEquals(0, getRelationshipList(result).size());
+        }
+    }
+
+    @DisplayName("Test Beam Algorithm Scenarios")
+    @Nested
+    class TestBeamAlgorithmScenarios {
+        @BeforeEach
+        void create_dead_end() {
+            try (Session session = driver.session()) {
+                session.run("match (a:External {name: 'A'}) create (a)-[:RELATION]->(:Node {name:'W', sens_value: 200})");
+            }
+        }
+
+        @Test
+        void test_greedy_walk_stops_at_the_dead_end() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(1, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "W", "RELATION"));
+        }
+
+        @Test
+        void test_beam_backtracks_from_the_dead_end() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'beam', beamWidth: 2}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "X", "BLACK_LIST"));
+            Assertions.assertEquals(rel.get(1), Rel.of("X", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_beam_backtracks_from_the_dead_end_through_filtered_nodes() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'beam', beamWidth: 2, nodes: {blackList: 'BlackList'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_beam_reaches_a_node_by_the_shorter_of_two_routes_within_max_depth() {
+            try (Session session = driver.session()) {
+                session.run("create (r:Root {name:'R'})-[:RELATION]->(a:Node {name:'RA', sens_value: 100}) " +
+                        "create (r)-[:RELATION]->(b:Node {name:'RB', sens_value: 50}) " +
+                        "create (a)-[:RELATION]->(b) " +
+                        "create (b)-[:RELATION]->(:Terminal {name:'RT'})").consume();
+            }
+            String cypher = "match (r:Root {name: 'R'}) " +
+                    "match (t:Terminal {name:'RT'}) " +
+                    "call custom.advancedTraverseGraph(r, t, 'sens_value', {algorithm: 'beam', beamWidth: 2, maxDepth: 2}) yield relationships, nodes, limit " +
+                    "return relationships, nodes, limit ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("R", "RB", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("RB", "RT", "RELATION"));
+            Assertions.assertTrue(result.get("limit").isNull());
+        }
+
+        @Test
+        void test_beam_keeps_the_best_route_within_max_depth() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'beam', beamWidth: 2, maxDepth: 3, nodes: {blackList: 'BlackList'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("J", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_beam_width_above_the_maximum_is_rejected() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'beam', beamWidth: 3000000000}) yield relationships " +
+                    "return relationships ";
+
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults(cypher));
+        }
+
+        @Test
+        void test_beam_without_a_route_returns_nothing() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'beam', beamWidth: 1}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(0, getRelationshipList(result).size());
+            Assertions.assertEquals(1, getNodeMap(result).size());
+        }
+    }
+
+    @DisplayName("Test Id Result Scenarios")
+    @Nested
+    class TestIdResultScenarios {
+        @Test
+        void test_ids_of_the_route() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.ids(a, ds, 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield nodeIds, relationshipIds, values " +
+                    "unwind range(0, size(relationshipIds) - 1) as i " +
+                    "match (from)-[r]->(to) where id(from) = nodeIds[i] and id(r) = relationshipIds[i] and id(to) = nodeIds[i + 1] " +
+                    "with values, collect(from.name + '-' + to.name) as hops " +
+                    "return hops, values ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(Arrays.asList("A-B", "B-G", "G-H", "H-DS"), result.get("hops").asList(Value::asString));
+            Assertions.assertTrue(result.get("values").isNull());
+        }
+
+        @Test
+        void test_ids_of_the_route_with_values() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.ids(a, ds, 'sens_value', {includeValues: true, relationships: {whiteList: 'RELATION'}}) yield values " +
+                    "return values ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(Arrays.asList(null, 80L, 40L, 60L, null), result.get("values").asList(Value::asObject));
+        }
+
+        @Test
+        void test_ids_of_a_route_ended_by_max_depth() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.ids(a, ds, 'sens_value', {maxDepth: 3, relationships: {whiteList: 'RELATION'}}) yield nodeIds, relationshipIds, limit " +
+                    "return nodeIds, relationshipIds, limit ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(0, result.get("nodeIds").size());
+            Assertions.assertEquals(0, result.get("relationshipIds").size());
+            Assertions.assertEquals("maxDepth", result.get("limit").asString());
+        }
+    }
+
+    @DisplayName("Test Stream Scenarios")
+    @Nested
+    class TestStreamScenarios {
+        @Test
+        void test_one_row_per_hop_in_route_order() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.stream(a, ds, 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield step, relationship, node, value, limit " +
+                    "return step, startNode(relationship).name as from, node.name as name, value, limit ";
+
+            List<Record> result = getCypherResultList(cypher);
+
+            Assertions.assertEquals(4, result.size());
+            Assertions.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), result.stream().map(r -> r.get("step").asLong()).collect(Collectors.toList()));
+            Assertions.assertEquals(Arrays.asList("A", "B", "G", "H"), result.stream().map(r -> r.get("from").asString()).collect(Collectors.toList()));
+            Assertions.assertEquals(Arrays.asList("B", "G", "H", "DS"), result.stream().map(r -> r.get("name").asString()).collect(Collectors.toList()));
+            Assertions.assertEquals(80L, result.get(0).get("value").asLong());
+            Assertions.assertTrue(result.get(3).get("value").isNull());
+            Assertions.assertTrue(result.stream().allMatch(r -> r.get("limit").isNull()));
+        }
+
+        @Test
+        void test_route_ended_by_max_depth_ends_with_a_limit_row() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.stream(a, ds, 'sens_value', {maxDepth: 3, relationships: {whiteList: 'RELATION'}}) yield step, node, limit " +
+                    "return step, node.name as name, limit ";
+
+            List<Record> result = getCypherResultList(cypher);
+
+            Assertions.assertEquals(4, result.size());
+            Assertions.assertEquals("H", result.get(2).get("name").asString());
+            Assertions.assertEquals(4L, result.get(3).get("step").asLong());
+            Assertions.assertTrue(result.get(3).get("name").isNull());
+            Assertions.assertEquals("maxDepth", result.get(3).get("limit").asString());
+        }
+
+        @Test
+        void test_searched_route_is_streamed_after_the_search() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.stream(a, ds, 'sens_value', {algorithm: 'optimal', nodes: {blackList: 'BlackList'}}) yield node " +
+                    "return node.name as name ";
+
+            List<Record> result = getCypherResultList(cypher);
+
+            Assertions.assertEquals(Arrays.asList("B", "G", "H", "DS"), result.stream().map(r -> r.get("name").asString()).collect(Collectors.toList()));
+        }
+
+        @Test
+        void test_long_route_is_streamed() {
+            createChain(20000);
+            String cypher = "match (a:Chain {idx: 1}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.stream(a, ds, 'sens_value', {}) yield step " +
+                    "return count(step) as hops ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(20000, result.get("hops").asLong());
+        }
+    }
+
+    @DisplayName("Test Best Child Cache Scenarios")
+    @Nested
+    class TestBestChildCacheScenarios {
+        private final String cypher = "match (a:External {name: 'A'}) " +
+                "match (ds:Node {name:'DS'}) " +
+                "call custom.advancedTraverseGraph(a, ds, 'sens_value', {cache: true, relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                "return relationships, nodes ";
+
+        @Test
+        void test_cached_route_is_the_route_of_the_walk() {
+            for (int i = 0; i < 2; i++) {
+                Record result = getCypherResults(cypher);
+                List<Rel> rel = getResult(result);
+
+                Assertions.assertEquals(4, rel.size());
+                Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+                Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+                Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+                Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+            }
+        }
+
+        @Test
+        void test_property_change_invalidates_the_parent() {
+            getCypherResults(cypher);
+            try (Session session = driver.session()) {
+                session.run("match (j:Node {name:'J'}) set j.sens_value = 100").consume();
+            }
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("J", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_new_relationship_invalidates_its_start_node() {
+            getCypherResults(cypher);
+            try (Session session = driver.session()) {
+                session.run("match (g:Node {name:'G'}) match (ds:Node {name:'DS'}) " +
+                        "create (g)-[:RELATION]->(:Node {name:'W', sens_value: 200})-[:RELATION]->(ds)").consume();
+            }
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "W", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("W", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_walk_reaching_a_known_route_takes_its_suffix() {
+            getCypherResults("match (b:Node {name: 'B'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(b, ds, 'sens_value', {cache: true, relationships: {whiteList: 'RELATION'}}) yield relationships " +
+                    "return relationships ");
+            long hits = getSuffixHits();
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(hits + 1, getSuffixHits());
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_property_change_invalidates_the_routes_through_the_parent() {
+            getCypherResults(cypher);
+            try (Session session = driver.session()) {
+                session.run("match (i:Node {name:'I'}) set i.sens_value = 100").consume();
+            }
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "I", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("I", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_known_route_longer_than_max_depth() {
+            getCypherResults(cypher);
+            String limited = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {cache: true, maxDepth: 3, relationships: {whiteList: 'RELATION'}}) yield relationships, limit " +
+                    "return relationships, limit ";
+
+            Record result = getCypherResults(limited);
+
+            Assertions.assertEquals(0, getRelationshipList(result).size());
+            Assertions.assertEquals("maxDepth", result.get("limit").asString());
+        }
+
+        @Test
+        void test_uncommitted_changes_bypass_the_cache() {
+            getCypherResults(cypher);
+            String uncommitted = "match (j:Node {name:'J'}) set j.sens_value = 100 " +
+                    "with j " +
+                    "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {cache: true, relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(uncommitted);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+        }
+
+        @Test
+        void test_decisions_are_counted_per_terminal() {
+            getCypherResults(cypher);
+            getCypherResults("match (a:External {name: 'A'}) " +
+                    "match (h:Node {name:'H'}) " +
+                    "call custom.advancedTraverseGraph(a, h, 'sens_value', {cache: true, relationships: {whiteList: 'RELATION'}}) yield relationships " +
+                    "return relationships ");
+
+            Record stats = getCypherResults("call custom.traversalCacheStats() yield cache, nodes, entries where cache = 'bestChild' return nodes, entries");
+
+            Assertions.assertTrue(stats.get("entries").asLong() > stats.get("nodes").asLong());
+        }
+
+        private long getSuffixHits() {
+            return getCypherResults("call custom.traversalCacheStats() yield cache, hits where cache = 'suffix' return hits").get("hits").asLong();
+        }
+    }
+
+    @DisplayName("Test Best Child Index Scenarios")
+    @Nested
+    class TestBestChildIndexScenarios {
+        private final String cypher = "match (a:External {name: 'A'}) " +
+                "match (ds:Node {name:'DS'}) " +
+                "call custom.advancedTraverseGraph(a, ds, 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                "return relationships, nodes ";
+
+        @BeforeEach
+        void build_index() {
+            Record result = getCypherResults("call custom.buildBestChildIndex('sens_value') yield property, nodes, relationships " +
+                    "return property, nodes, relationships");
+
+            Assertions.assertEquals("sens_value", result.get("property").asString());
+            Assertions.assertEquals(14, result.get("nodes").asLong());
+            Assertions.assertEquals(18, result.get("relationships").asLong());
+        }
+
+        @AfterEach
+        void drop_index() {
+            try (Session session = driver.session()) {
+                session.run("call custom.dropBestChildIndex('sens_value')").consume();
+            }
+        }
+
+        @Test
+        void test_indexed_route_is_the_route_of_the_walk() {
+            long hits = getIndexHits();
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(hits + 4, getIndexHits());
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_indexed_route_with_node_white_list_and_fallback() {
+            String filtered = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {onVisited: 'fallback', nodes: {whiteList: 'Node'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(filtered);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_indexed_route_with_lowest_values() {
+            String lowest = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {order: 'min', relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(lowest);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "D", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("D", "E", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("E", "F", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("F", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_property_change_is_ranked_again() {
+            getCypherResults(cypher);
+            try (Session session = driver.session()) {
+                session.run("match (j:Node {name:'J'}) set j.sens_value = 100").consume();
+            }
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("J", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_node_created_after_the_build_is_ranked() {
+            try (Session session = driver.session()) {
+                session.run("match (g:Node {name:'G'}) match (ds:Node {name:'DS'}) " +
+                        "create (g)-[:RELATION]->(:Node {name:'W', sens_value: 200})-[:RELATION]->(ds)").consume();
+            }
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "W", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("W", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_index_larger_than_max_bytes_is_refused_and_keeps_the_built_one() {
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults("call custom.buildBestChildIndex('sens_value', {maxBytes: 1}) yield property return property"));
+
+            Assertions.assertEquals(1, getCypherResultList("call custom.traversalCacheStats() yield cache " +
+                    "where cache = 'bestChildIndex:sens_value' return cache").size());
+        }
+
+        @Test
+        void test_failed_rebuild_keeps_serving_the_built_index() {
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults("call custom.buildBestChildIndex('sens_value', {maxBytes: 1}) yield property return property"));
+            long hits = getIndexHits();
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(hits + 4, getIndexHits());
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_drop_removes_the_index() {
+            drop_index();
+
+            Record result = getCypherResults("call custom.traversalCacheStats() yield cache " +
+                    "return [c in collect(cache) where c starts with 'bestChildIndex'] as indexes");
+
+            Assertions.assertEquals(0, result.get("indexes").asList().size());
+        }
+
+        private long getIndexHits() {
+            return getCypherResults("call custom.traversalCacheStats() yield cache, hits where cache = 'bestChildIndex:sens_value' return hits").get("hits").asLong();
+        }
+    }
+
+    @DisplayName("Test Projection Scenarios")
+    @Nested
+    class TestProjectionScenarios {
+        @AfterEach
+        void drop_projection() {
+            try (Session session = driver.session()) {
+                session.run("call custom.project.drop('g')").consume();
+            }
+        }
+
+        @Test
+        void test_projection_loads_the_graph() {
+            Record estimate = getCypherResults("call custom.project.estimate({}) yield nodes, relationships, bytes " +
+                    "return nodes, relationships, bytes");
+            Record result = getCypherResults("call custom.project('g', 'sens_value', {}) yield graph, nodes, relationships, bytes " +
+                    "return graph, nodes, relationships, bytes");
+
+            Assertions.assertEquals(14, estimate.get("nodes").asLong());
+            Assertions.assertEquals(18, estimate.get("relationships").asLong());
+            Assertions.assertEquals("g", result.get("graph").asString());
+            Assertions.assertEquals(14, result.get("nodes").asLong());
+            Assertions.assertEquals(18, result.get("relationships").asLong());
+            Assertions.assertTrue(result.get("bytes").asLong() > 0);
+        }
+
+        @Test
+        void test_projected_route_is_the_route_of_the_walk() {
+            getCypherResults("call custom.project('g', 'sens_value', {}) yield graph return graph");
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.project.traverseGraph('g', a, ds, {}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "X", "BLACK_LIST"));
+            Assertions.assertEquals(rel.get(1), Rel.of("X", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_projected_route_with_lists() {
+            getCypherResults("call custom.project('g', 'sens_value', {}) yield graph return graph");
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.project.traverseGraph('g', a, ds, {nodes: {blackList: 'BlackList'}, relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_projection_lists_apply_to_its_walks() {
+            Record projected = getCypherResults("call custom.project('g', 'sens_value', {relationships: {blackList: 'BLACK_LIST'}}) yield relationships " +
+                    "return relationships");
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.project.traverseGraph('g', a, ds, {order: 'min'}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(18, projected.get("relationships").asLong());
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "D", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("F", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_projected_route_to_endpoints_without_white_listed_label() {
+            try (Session session = driver.session()) {
+                session.run("create (:Root {name:'R'})-[:RELATION]->(:Node {name:'RA', sens_value: 1})-[:RELATION]->(:Terminal {name:'RT'})").consume();
+            }
+            getCypherResults("call custom.project('g', 'sens_value', {nodes: {whiteList: 'Node'}}) yield graph return graph");
+            String live = "match (r:Root {name: 'R'}) " +
+                    "match (t:Terminal {name:'RT'}) " +
+                    "call custom.advancedTraverseGraph(r, t, 'sens_value', {nodes: {whiteList: 'Node'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+            String projected = "match (r:Root {name: 'R'}) " +
+                    "match (t:Terminal {name:'RT'}) " +
+                    "call custom.project.traverseGraph('g', r, t, {}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            List<Rel> liveRel = getResult(getCypherResults(live));
+            List<Rel> rel = getResult(getCypherResults(projected));
+
+            Assertions.assertEquals(liveRel, rel);
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("R", "RA", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("RA", "RT", "RELATION"));
+        }
+
+        @Test
+        void test_projection_does_not_follow_writes() {
+            getCypherResults("call custom.project('g', 'sens_value', {}) yield graph return graph");
+            try (Session session = driver.session()) {
+                session.run("match (j:Node {name:'J'}) set j.sens_value = 100").consume();
+            }
+            String cypher = "match (b:Node {name: 'B'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.project.traverseGraph.ids('g', b, ds, {}) yield nodeIds " +
+                    "unwind nodeIds as nodeId " +
+                    "match (n) where id(n) = nodeId " +
+                    "return collect(n.name) as names";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(Arrays.asList("B", "G", "H", "DS"), result.get("names").asList());
+        }
+
+        @Test
+        void test_projected_route_longer_than_max_depth() {
+            getCypherResults("call custom.project('g', 'sens_value', {}) yield graph return graph");
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.project.traverseGraph('g', a, ds, {maxDepth: 3, relationships: {whiteList: 'RELATION'}}) yield relationships, limit " +
+                    "return relationships, limit ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(0, getRelationshipList(result).size());
+            Assertions.assertEquals("maxDepth", result.get("limit").asString());
+        }
+
+        @Test
+        void test_drop_removes_the_projection() {
+            getCypherResults("call custom.project('g', 'sens_value', {}) yield graph return graph");
+            drop_projection();
+
+            Assertions.assertEquals(0, getCypherResultList("call custom.project.list()").size());
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults("match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.project.traverseGraph('g', a, ds, {}) yield relationships " +
+                    "return relationships"));
+        }
+
+        @Test
+        void test_projection_name_is_unique() {
+            getCypherResults("call custom.project('g', 'sens_value', {}) yield graph return graph");
+
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults("call custom.project('g', 'sens_value', {}) yield graph return graph"));
+        }
+
+        @Test
+        void test_projection_larger_than_max_bytes_is_refused() {
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults("call custom.project('g', 'sens_value', {maxBytes: 1}) yield graph return graph"));
+            Assertions.assertEquals(0, getCypherResultList("call custom.project.list()").size());
+        }
+    }
+
+    @DisplayName("Test Multi Terminal Scenarios")
+    @Nested
+    class TestMultiTerminalScenarios {
+        @Test
+        void test_walk_stops_at_any_terminal() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (h:Node {name:'H'}) " +
+                    "match (j:Node {name:'J'}) " +
+                    "call custom.advancedTraverseGraph.multi([a], [h, j], 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield terminal, relationships, nodes " +
+                    "return terminal, relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals("J", result.get("terminal").asNode().get("name").asString());
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "J", "RELATION"));
+        }
+
+        @Test
+        void test_walk_stops_at_any_node_with_the_terminal_label() {
+            try (Session session = driver.session()) {
+                session.run("match (n:Node) where n.name in ['I', 'F'] set n:Sink").consume();
+            }
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "call custom.advancedTraverseGraph.multi([a], [], 'sens_value', {terminalLabel: 'Sink', relationships: {whiteList: 'RELATION'}}) yield terminal, relationships, nodes " +
+                    "return terminal, relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals("I", result.get("terminal").asNode().get("name").asString());
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "I", "RELATION"));
+        }
+
+        @Test
+        void test_walks_from_all_nodes_with_the_root_label() {
+            String cypher = "match (c:Node {name: 'C'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.multi([c], [ds], 'sens_value', {rootLabel: 'External', concurrency: 2, relationships: {whiteList: 'RELATION'}}) yield root, terminal, relationships, nodes " +
+                    "return root.name as root, terminal.name as terminal, size(relationships) as hops " +
+                    "order by root";
+
+            List<Record> results = getCypherResultList(cypher);
+
+            Assertions.assertEquals(2, results.size());
+            Assertions.assertEquals("A", results.get(0).get("root").asString());
+            Assertions.assertEquals(4, results.get(0).get("hops").asInt());
+            Assertions.assertEquals("C", results.get(1).get("root").asString());
+            Assertions.assertEquals("DS", results.get(1).get("terminal").asString());
+            Assertions.assertEquals(3, results.get(1).get("hops").asInt());
+        }
+
+        @Test
+        void test_optimal_route_to_the_best_terminal() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (h:Node {name:'H'}) " +
+                    "match (j:Node {name:'J'}) " +
+                    "call custom.advancedTraverseGraph.multi([a], [h, j], 'sens_value', {algorithm: 'optimal', relationships: {whiteList: 'RELATION'}}) yield terminal, relationships, nodes " +
+                    "return terminal, relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals("H", result.get("terminal").asNode().get("name").asString());
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+        }
+
+        @Test
+        void test_bidirectional_needs_a_single_terminal() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.multi([a], [ds], 'sens_value', {algorithm: 'bidirectional'}) yield relationships " +
+                    "return relationships ";
+
+            Assertions.assertThrows(ClientException.class, () -> getCypherResultList(cypher));
+        }
+
+        @Test
+        void test_without_terminals() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "call custom.advancedTraverseGraph.multi([a], [], 'sens_value', {terminalLabel: 'Missing'}) yield relationships " +
+                    "return relationships ";
+
+            Assertions.assertThrows(ClientException.class, () -> getCypherResultList(cypher));
+        }
+    }
+
+    @DisplayName("Test Batch Scenarios")
+    @Nested
+    class TestBatchScenarios {
+        @Test
+        void test_one_result_per_pair_in_pair_order() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (b:Node {name: 'B'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.batch([[a, ds], [b, ds]], 'sens_value', {nodes: {whiteList: 'Node'}}) yield index, root, relationships, nodes " +
+                    "return index, root, relationships, nodes ";
+
+            List<Record> records = getCypherResultList(cypher);
+
+            Assertions.assertEquals(2, records.size());
+            Assertions.assertEquals(0, records.get(0).get("index").asLong());
+            Assertions.assertEquals("A", records.get(0).get("root").asNode().get("name").asString());
+            Assertions.assertEquals(4, getResult(records.get(0)).size());
+            List<Rel> rel = getResult(records.get(1));
+            Assertions.assertEquals(1, records.get(1).get("index").asLong());
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("G", "H", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_parallel_batch_returns_one_result_per_pair() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (b:Node {name: 'B'}) " +
+                    "match (c:Node {name: 'C'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.batch([[a, ds], [b, ds], [c, ds]], 'sens_value', {nodes: {whiteList: 'Node'}, concurrency: 2}) yield index, relationships, nodes " +
+                    "return index, relationships, nodes order by index ";
+
+            List<Record> records = getCypherResultList(cypher);
+
+            Assertions.assertEquals(3, records.size());
+            Assertions.assertEquals(4, getResult(records.get(0)).size());
+            Assertions.assertEquals(3, getResult(records.get(1)).size());
+            List<Rel> rel = getResult(records.get(2));
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("C", "K", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("K", "L", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("L", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_parallel_batch_runs_no_more_workers_than_processors() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (b:Node {name: 'B'}) " +
+                    "match (c:Node {name: 'C'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.batch([[a, ds], [b, ds], [c, ds], [a, ds], [b, ds], [c, ds]], 'sens_value', {nodes: {whiteList: 'Node'}, concurrency: 10000}) yield index " +
+                    "return index order by index ";
+
+            for (int call = 0; call < 3; call++) {
+                Assertions.assertEquals(6, getCypherResultList(cypher).size());
+            }
+            long workers = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("custom-traversal-"))
+                    .count();
+            Assertions.assertTrue(workers <= Runtime.getRuntime().availableProcessors());
+        }
+
+        @Test
+        void test_pair_that_is_not_a_root_and_a_terminal_is_rejected() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "call custom.advancedTraverseGraph.batch([[a]], 'sens_value', {}) yield relationships " +
+                    "return relationships ";
+
+            Assertions.assertThrows(ClientException.class, () -> getCypherResultList(cypher));
+        }
+    }
+
+    @DisplayName("Test Alternative Routes Scenarios")
+    @Nested
+    class TestAlternativeRoutesScenarios {
+        @Test
+        void test_next_route_through_a_dominated_label_is_found() {
+            createDetour();
+            try (Session session = driver.session()) {
+                session.run("match (r:Root {name: 'R'}) match (t:Terminal {name:'RT'}) " +
+                        "create (r)-[:RELATION]->(:Node {name:'RZ', sens_value: 1000})-[:RELATION]->(t)").consume();
+            }
+            String cypher = "match (r:Root {name: 'R'}) " +
+                    "match (t:Terminal {name:'RT'}) " +
+                    "call custom.advancedTraverseGraph.routes(r, t, 'sens_value', {k: 3}) yield rank, score, relationships, nodes " +
+                    "return rank, score, relationships, nodes ";
+
+            List<Record> records = getCypherResultList(cypher);
+
+            Assertions.assertEquals(3, records.size());
+            Assertions.assertEquals(Arrays.asList(1000.0, 111.0, 100.0), records.stream().map(r -> r.get("score").asDouble()).collect(Collectors.toList()));
+            List<Rel> rel = getResult(records.get(1));
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("R", "RY", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("RX", "RT", "RELATION"));
+        }
+
+        @Test
+        void test_routes_are_ranked_best_first() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.routes(a, ds, 'sens_value', {k: 3, relationships: {whiteList: 'RELATION'}}) yield rank, score, relationships, nodes " +
+                    "return rank, score, relationships, nodes ";
+
+            List<Record> records = getCypherResultList(cypher);
+
+            Assertions.assertEquals(3, records.size());
+            Assertions.assertEquals(Arrays.asList(1L, 2L, 3L), records.stream().map(r -> r.get("rank").asLong()).collect(Collectors.toList()));
+            Assertions.assertEquals(Arrays.asList(180.0, 170.0, 170.0), records.stream().map(r -> r.get("score").asDouble()).collect(Collectors.toList()));
+            List<Rel> rel = getResult(records.get(0));
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_routes_end_when_there_are_no_more() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.routes(a, ds, 'sens_value', {k: 10, relationships: {whiteList: 'RELATION'}}) yield rank, score, relationships " +
+                    "return rank, score, relationships ";
+
+            List<Record> records = getCypherResultList(cypher);
+
+            Assertions.assertEquals(Arrays.asList(180.0, 170.0, 170.0, 150.0, 110.0), records.stream().map(r -> r.get("score").asDouble()).collect(Collectors.toList()));
+            Assertions.assertEquals(5, records.stream().map(r -> r.get("relationships").asList().toString()).distinct().count());
+        }
+
+        @Test
+        void test_routes_with_min_aggregate() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.routes(a, ds, 'sens_value', {k: 2, aggregate: 'min', relationships: {whiteList: 'RELATION'}}) yield rank, score, relationships, nodes " +
+                    "return rank, score, relationships, nodes ";
+
+            List<Record> records = getCypherResultList(cypher);
+
+            Assertions.assertEquals(2, records.size());
+            Assertions.assertEquals(45.0, records.get(0).get("score").asDouble());
+            Assertions.assertEquals(getResult(records.get(0)).get(0), Rel.of("A", "C", "RELATION"));
+            Assertions.assertEquals(40.0, records.get(1).get("score").asDouble());
+        }
+
+        @Test
+        void test_routes_end_with_the_limit() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.routes(a, ds, 'sens_value', {maxVisited: 1}) yield rank, score, relationships, limit " +
+                    "return rank, score, relationships, limit ";
+
+            List<Record> records = getCypherResultList(cypher);
+
+            Assertions.assertEquals(1, records.size());
+            Assertions.assertEquals("maxVisited", records.get(0).get("limit").asString());
+            Assertions.assertTrue(records.get(0).get("score").isNull());
+            Assertions.assertTrue(records.get(0).get("relationships").asList().isEmpty());
+        }
+    }
+
+    @DisplayName("Test Score Scenarios")
+    @Nested
+    class TestScoreScenarios {
+        @BeforeEach
+        void set_costs() {
+            try (Session session = driver.session()) {
+                session.run("match ()-[r:RELATION]->() set r.cost = 0").consume();
+                session.run("match (:External {name: 'A'})-[r:RELATION]->(:Node {name: 'B'}) set r.cost = 50").consume();
+            }
+        }
+
+        @Test
+        void test_score_subtracts_relationship_property() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {score: 'node.sens_value - rel.cost', relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            List<Rel> rel = getResult(getCypherResults(cypher));
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "C", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("C", "K", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("K", "L", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("L", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_score_with_optimal_algorithm() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {algorithm: 'optimal', score: 'node.sens_value - rel.cost', relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            List<Rel> rel = getResult(getCypherResults(cypher));
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "C", "RELATION"));
+        }
+
+        @Test
+        void test_score_with_constants_ranks_like_the_property() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {score: '(node.sens_value + 10) * 2 / -1', order: 'min', relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            List<Rel> rel = getResult(getCypherResults(cypher));
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "B", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("B", "G", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("G", "H", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("H", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_score_with_missing_property_has_no_candidate() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {score: 'node.sens_value - rel.no_such_cost'}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Assertions.assertTrue(getResult(getCypherResults(cypher)).isEmpty());
+        }
+
+        @Test
+        void test_invalid_score_is_rejected() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {score: 'node.sens_value -'}) yield relationships " +
+                    "return relationships ";
+
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults(cypher));
+        }
+    }
+
+    @DisplayName("Test Property Predicate Scenarios")
+    @Nested
+    class TestPropertyPredicateScenarios {
+        @Test
+        void test_range_on_ranked_property_skips_best_child() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {nodes: {where: {sens_value: {lt: 80}}}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            List<Rel> rel = getResult(getCypherResults(cypher));
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "C", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("C", "K", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("K", "L", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("L", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_equality_on_other_node_property_is_counted_in_profile() {
+            try (Session session = driver.session()) {
+                session.run("match (n:Node) set n.tier = 1").consume();
+                session.run("match (n:Node {name: 'B'}) set n.tier = 2").consume();
+            }
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {profile: true, nodes: {where: {tier: 1}}}) yield relationships, nodes, profile " +
+                    "return relationships, nodes, profile ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "C", "RELATION"));
+            Map<String, Object> rejected = (Map<String, Object>) result.get("profile").asMap().get("rejected");
+            Assertions.assertEquals(2L, rejected.get("nodeProperty"));
+        }
+
+        @Test
+        void test_relationship_predicate_rejects_before_reading_the_node() {
+            try (Session session = driver.session()) {
+                session.run("match ()-[r:RELATION]->() set r.active = true").consume();
+                session.run("match (:External {name: 'A'})-[r:RELATION]->(:Node {name: 'B'}) set r.active = false").consume();
+            }
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {relationships: {where: {active: true}}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            List<Rel> rel = getResult(getCypherResults(cypher));
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "C", "RELATION"));
+            Assertions.assertEquals(rel.get(3), Rel.of("L", "DS", "RELATION"));
+        }
+
+        @Test
+        void test_predicate_on_unknown_property_has_no_candidate() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {nodes: {where: {no_such_property: {gte: 0}}}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Assertions.assertTrue(getResult(getCypherResults(cypher)).isEmpty());
+        }
+
+        @Test
+        void test_invalid_operator_is_rejected() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {nodes: {where: {sens_value: {between: 40}}}}) yield relationships " +
+                    "return relationships ";
+
+            Assertions.assertThrows(ClientException.class, () -> getCypherResults(cypher));
+        }
+    }
+
+    @DisplayName("Test Traversal Stats Scenarios")
+    @Nested
+    class TestTraversalStatsScenarios {
+        @BeforeEach
+        void reset_stats() {
+            try (Session session = driver.session()) {
+                session.run("call custom.traversalStats.reset()").consume();
+            }
+        }
+
+        @Test
+        void test_traversal_is_counted() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {relationships: {whiteList: 'RELATION'}}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+            List<Rel> rel = getResult(getCypherResults(cypher));
+
+            Record stats = getCypherResults("call custom.traversalStats() yield procedure, property, calls, hops, relationships, rejections, totalNanos, p50Nanos, maxNanos " +
+                    "where procedure = 'custom.advancedTraverseGraph' and property = 'sens_value' " +
+                    "return calls, hops, relationships, rejections, totalNanos, p50Nanos, maxNanos ");
+
+            Assertions.assertEquals(1, stats.get("calls").asLong());
+            Assertions.assertEquals(rel.size(), stats.get("hops").asLong());
+            Assertions.assertTrue(stats.get("relationships").asLong() >= rel.size());
+            Assertions.assertTrue(stats.get("rejections").asLong() >= 1);
+            Assertions.assertTrue(stats.get("totalNanos").asLong() > 0);
+            Assertions.assertTrue(stats.get("p50Nanos").asLong() <= stats.get("maxNanos").asLong());
+        }
+
+        @Test
+        void test_missing_property_is_counted() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph.ids(a, ds, 'no_such_value', {}) yield relationshipIds " +
+                    "return relationshipIds ";
+            getCypherResults(cypher);
+
+            Record stats = getCypherResults("call custom.traversalStats() yield procedure, property, calls, propertyMisses " +
+                    "where procedure = 'custom.advancedTraverseGraph.ids' and property = 'no_such_value' " +
+                    "return calls, propertyMisses ");
+
+            Assertions.assertEquals(1, stats.get("calls").asLong());
+            Assertions.assertTrue(stats.get("propertyMisses").asLong() > 0);
+        }
+
+        @Test
+        void test_reset_zeroes_the_stats() {
+            getCypherResults("match (a:External {name: 'A'}) match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {}) yield relationships return relationships ");
+            reset_stats();
+
+            List<Record> stats = getCypherResultList("call custom.traversalStats() yield calls, hops, maxNanos return calls, hops, maxNanos ");
+
+            Assertions.assertFalse(stats.isEmpty());
+            for (Record record : stats) {
+                Assertions.assertEquals(0, record.get("calls").asLong());
+                Assertions.assertEquals(0, record.get("hops").asLong());
+                Assertions.assertEquals(0, record.get("maxNanos").asLong());
+            }
+        }
+
+        @Test
+        void test_stats_are_published_over_jmx() throws Exception {
+            getCypherResults("match (a:External {name: 'A'}) match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {}) yield relationships return relationships ");
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Set<ObjectName> names = server.queryNames(new ObjectName("customFunctions:type=TraversalStats" +
+                    ",procedure=" + ObjectName.quote("custom.advancedTraverseGraph") + ",*"), null);
+
+            Assertions.assertEquals(1, names.stream()
+                    .filter(name -> "sens_value".equals(ObjectName.unquote(name.getKeyProperty("property"))))
+                    .mapToLong(name -> {
+                        try {
+                            return (Long) server.getAttribute(name, "Calls");
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .sum());
+        }
+    }
+
+    @DisplayName("Test Profile Scenarios")
+    @Nested
+    class TestProfileScenarios {
+        @Test
+        void test_profile_counts_rejections_by_reason() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {profile: true, relationships: {whiteList: 'RELATION'}}) yield relationships, nodes, profile " +
+                    "return relationships, nodes, profile ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+            Map<String, Object> profile = result.get("profile").asMap();
+            Map<String, Object> rejected = (Map<String, Object>) profile.get("rejected");
+
+            Assertions.assertEquals(4, rel.size());
+            Assertions.assertEquals((long) rel.size(), profile.get("expansions"));
+            Assertions.assertEquals(4L, ((List<Object>) profile.get("degrees")).get(0));
+            Assertions.assertEquals(1L, rejected.get("typeWhiteList"));
+            Assertions.assertEquals(0L, rejected.get("typeBlackList"));
+            Assertions.assertTrue((Long) profile.get("dbHits") >= (Long) profile.get("relationships"));
+            Assertions.assertTrue((Long) profile.get("elapsedNanos") > 0);
+        }
+
+        @Test
+        void test_profile_counts_label_rejections() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {profile: true, nodes: {blackList: 'BlackList'}}) yield profile " +
+                    "return profile ";
+
+            Map<String, Object> rejected = (Map<String, Object>) getCypherResults(cypher).get("profile").asMap().get("rejected");
+
+            Assertions.assertEquals(1L, rejected.get("labelBlackList"));
+            Assertions.assertEquals(0L, rejected.get("labelWhiteList"));
+        }
+
+        @Test
+        void test_profile_with_cache_expands_every_hop() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {profile: true, cache: true, relationships: {whiteList: 'RELATION'}}) yield profile " +
+                    "return profile ";
+            getCypherResults(cypher);
+
+            Map<String, Object> profile = getCypherResults(cypher).get("profile").asMap();
+            Map<String, Object> rejected = (Map<String, Object>) profile.get("rejected");
+
+            Assertions.assertEquals(4L, profile.get("expansions"));
+            Assertions.assertEquals(4, ((List<Object>) profile.get("degrees")).size());
+            Assertions.assertEquals(4L, ((List<Object>) profile.get("degrees")).get(0));
+            Assertions.assertEquals(1L, rejected.get("typeWhiteList"));
+        }
+
+        @Test
+        void test_profile_lists_hops_answered_by_the_index() {
+            getCypherResults("call custom.buildBestChildIndex('sens_value') yield property return property");
+            try {
+                String cypher = "match (a:External {name: 'A'}) " +
+                        "match (ds:Node {name:'DS'}) " +
+                        "call custom.advancedTraverseGraph(a, ds, 'sens_value', {profile: true, relationships: {whiteList: 'RELATION'}}) yield relationships, nodes, profile " +
+                        "return relationships, nodes, profile ";
+
+                Record result = getCypherResults(cypher);
+                Map<String, Object> profile = result.get("profile").asMap();
+
+                Assertions.assertEquals(4, getResult(result).size());
+                Assertions.assertEquals(4L, profile.get("expansions"));
+                // the hop to the terminal is still scanned, to take the relationship a scan would
+                Assertions.assertEquals(3L, profile.get("indexHits"));
+                Assertions.assertEquals(4, ((List<Object>) profile.get("degrees")).size());
+                Assertions.assertEquals(4L, ((List<Object>) profile.get("degrees")).get(0));
+            } finally {
+                try (Session session = driver.session()) {
+                    session.run("call custom.dropBestChildIndex('sens_value')").consume();
+                }
+            }
+        }
+
+        @Test
+        void test_profile_is_null_by_default() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {}) yield profile " +
+                    "return profile ";
+
+            Assertions.assertTrue(getCypherResults(cypher).get("profile").isNull());
+        }
+    }
+
+    @DisplayName("Test Transaction State Scenarios")
+    @Nested
+    class TestTransactionStateScenarios {
+        @Test
+        void test_nodes_created_in_the_same_transaction_are_traversed() {
+            String cypher = "match (a:External {name: 'A'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "create (a)-[:RELATION]->(:Node {name:'N', sens_value: 1000})-[:RELATION]->(ds) " +
+                    "with a, ds " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(2, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("A", "N", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("N", "DS", "RELATION"));
+        }
+    }
+
+    @DisplayName("Test Cycle Scenarios")
+    @Nested
+    class TestCycleScenarios {
+        @BeforeEach
+        void create_cycle() {
+            try (Session session = driver.session()) {
+                session.run("match (ds:Node {name:'DS'}) " +
+                        "create (p:Node {name:'P', sens_value: 95})-[:RELATION]->(q:Node {name:'Q', sens_value: 96}) " +
+                        "create (q)-[:RELATION]->(p) " +
+                        "create (q)-[:RELATION]->(r:Node {name:'R', sens_value: 5}) " +
+                        "create (r)-[:RELATION]->(ds)");
+            }
+        }
+
+        @Test
+        void test_walk_stops_when_best_child_was_already_visited() {
+            String cypher = "match (p:Node {name: 'P'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(p, ds, 'sens_value', {}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(1, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("P", "Q", "RELATION"));
+        }
+
+        @Test
+        void test_walk_falls_back_to_next_best_child_when_best_child_was_already_visited() {
+            String cypher = "match (p:Node {name: 'P'}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(p, ds, 'sens_value', {onVisited: 'fallback'}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+            List<Rel> rel = getResult(result);
+
+            Assertions.assertEquals(3, rel.size());
+            Assertions.assertEquals(rel.get(0), Rel.of("P", "Q", "RELATION"));
+            Assertions.assertEquals(rel.get(1), Rel.of("Q", "R", "RELATION"));
+            Assertions.assertEquals(rel.get(2), Rel.of("R", "DS", "RELATION"));
+        }
+    }
+
+    @DisplayName("Test Long Path Scenarios")
+    @Nested
+    class TestLongPathScenarios {
+        @Test
+        void test_path_longer_than_the_thread_stack_allows_for_recursion() {
+            createChain(20000);
+            String cypher = "match (a:Chain {idx: 1}) " +
+                    "match (ds:Node {name:'DS'}) " +
+                    "call custom.advancedTraverseGraph(a, ds, 'sens_value', {}) yield relationships, nodes " +
+                    "return relationships, nodes ";
+
+            Record result = getCypherResults(cypher);
+
+            Assertions.assertEquals(20000, getRelationshipList(result).size());
+            Assertions.assertEquals(20001, getNodeMap(result).size());
+        }
+    }
+
+    /**
+     * R->RX(100)->RT is the best route while RX is only reachable from R; R->RY(1)->RV(10)->RX->RT is better, but
+     * reaches RV with a lower score than R->RX->RV does, through other nodes.
+     */
+    private void createDetour() {
+        try (Session session = driver.session()) {
+            session.run("create (r:Root {name:'R'})-[:RELATION]->(x:Node {name:'RX', sens_value: 100}) " +
+                    "create (r)-[:RELATION]->(y:Node {name:'RY', sens_value: 1}) " +
+                    "create (v:Node {name:'RV', sens_value: 10}) " +
+                    "create (x)-[:RELATION]->(v) " +
+                    "create (y)-[:RELATION]->(v) " +
+                    "create (v)-[:RELATION]->(x) " +
+                    "create (x)-[:RELATION]->(:Terminal {name:'RT'})").consume();
+        }
+    }
+
+    /**
+     * A chain J0->..->J{count} where each step is a diamond through A{i} and B{i}; the better of the two alternates, so
+     * only one of the 2^count routes has the highest sum.
+     */
+    private void createDiamonds(int count) {
+        try (Session session = driver.session()) {
+            session.run("unwind range(0, $count) as i create (:Join {idx: i, name: 'J' + i, sens_value: 1})", Map.of("count", count));
+            session.run("match (a:Join), (b:Join) where b.idx = a.idx + 1 " +
+                    "create (a)-[:RELATION]->(:Node {name: 'A' + b.idx, sens_value: case b.idx % 2 when 0 then 2 else 1 end})-[:RELATION]->(b) " +
+                    "create (a)-[:RELATION]->(:Node {name: 'B' + b.idx, sens_value: case b.idx % 2 when 0 then 1 else 2 end})-[:RELATION]->(b)");
+            session.run("match (j:Join {idx: $count}) create (j)-[:RELATION]->(:Terminal {name:'DT'})", Map.of("count", count));
+        }
+    }
+
+    private void createChain(int length) {
+        try (Session session = driver.session()) {
+            session.run("unwind range(1, $length) as i create (:Chain {idx: i, sens_value: i})", Map.of("length", length));
+            session.run("match (n:Chain) with n order by n.idx with collect(n) as chain " +
+                    "unwind range(0, size(chain) - 2) as i " +
+                    "with chain[i] as a, chain[i + 1] as b " +
+                    "create (a)-[:RELATION]->(b)");
+            session.run("match (n:Chain {idx: $length}) match (ds:Node {name:'DS'}) create (n)-[:RELATION]->(ds)", Map.of("length", length));
+        }
+    }
+
+    private List<Relationship> getRelationshipList(Record record) {
+        return record.get("relationships").asList(Value::asRelationship);
+    }
+
+    private Map<String, Node> getNodeMap(Record record) {
+        return record.get("nodes").asMap(Value::asNode);
+
+    }
+
+    private List<Rel> getResult(Record record) {
+        Map<String, Node> nodes = getNodeMap(record);
+        List<Relationship> relationships = getRelationshipList(record);
+        return Rel.merge(nodes, relationships);
+    }
+
+    private List<Record> getCypherResultList(String cypher) {
+        try (Session session = driver.session()) {
+            return session.run(cypher).list();
+        }
     }
 
     private Record getCypherResults(String cypher) {
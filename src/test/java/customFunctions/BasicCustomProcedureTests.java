@@ -2,12 +2,14 @@ package customFunctions;
 
 import org.junit.jupiter.api.*;
 import org.neo4j.driver.*;
+import org.neo4j.driver.exceptions.ClientException;
 import org.neo4j.driver.types.Node;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 class BasicCustomProcedureTests {
@@ -73,6 +75,85 @@ class BasicCustomProcedureTests {
         Assertions.assertIterableEquals(Arrays.asList("B", "G", "H"), listOfIds);
     }
 
+    @Test
+    @DisplayName("Test Basic Traverse Graph stops on a cycle")
+    void test_cycle_stops() {
+        createCycle();
+        String cypher = "match (a:External {name: 'A'}) " +
+                "call custom.traverseGraph(a, 'sens_value') yield nodes " +
+                "return nodes ";
+        List<Node> result = getCypherResults(cypher);
+        List<String> listOfIds = result.stream().map(n -> n.get("name").asString()).collect(Collectors.toList());
+        Assertions.assertIterableEquals(Arrays.asList("B", "G", "H"), listOfIds);
+    }
+
+    @Test
+    @DisplayName("Test Basic Traverse Graph falls back to the next best child on a cycle")
+    void test_cycle_fallback() {
+        createCycle();
+        String cypher = "match (a:External {name: 'A'}) " +
+                "call custom.traverseGraph(a, 'sens_value', {onVisited: 'fallback'}) yield nodes " +
+                "return nodes ";
+        List<Node> result = getCypherResults(cypher);
+        List<String> listOfIds = result.stream().map(n -> n.get("name").asString()).collect(Collectors.toList());
+        Assertions.assertIterableEquals(Arrays.asList("B", "G", "H", "Z"), listOfIds);
+    }
+
+    @Test
+    @DisplayName("Test Basic Traverse Graph on a path longer than the thread stack allows for recursion")
+    void test_long_path() {
+        try (Session session = driver.session()) {
+            session.run("unwind range(1, 20000) as i create (:Chain {idx: i, sens_value: i})");
+            session.run("match (n:Chain) with n order by n.idx with collect(n) as chain " +
+                    "unwind range(0, size(chain) - 2) as i " +
+                    "with chain[i] as a, chain[i + 1] as b " +
+                    "create (a)-[:RELATION]->(b)");
+        }
+        String cypher = "match (a:Chain {idx: 1}) " +
+                "call custom.traverseGraph(a, 'sens_value') yield nodes " +
+                "return nodes ";
+        List<Node> result = getCypherResults(cypher);
+        Assertions.assertEquals(19999, result.size());
+        Assertions.assertEquals(20000, result.get(result.size() - 1).get("idx").asLong());
+    }
+
+    @Test
+    @DisplayName("Test Basic Traverse Graph profile counts the relationships read per hop")
+    void test_profile() {
+        String cypher = "match (a:External {name: 'A'}) " +
+                "call custom.traverseGraph(a, 'sens_value', {profile: true}) yield profile " +
+                "return profile ";
+        try (Session session = driver.session()) {
+            Map<String, Object> profile = session.run(cypher).single().get("profile").asMap();
+            Map<String, Object> rejected = (Map<String, Object>) profile.get("rejected");
+
+            Assertions.assertEquals(Arrays.asList(3L, 2L, 2L, 1L), profile.get("degrees"));
+            Assertions.assertEquals(4L, profile.get("expansions"));
+            Assertions.assertEquals(8L, profile.get("relationships"));
+            Assertions.assertEquals(1L, rejected.get("missingProperty"));
+            Assertions.assertTrue((Long) profile.get("dbHits") > 0);
+            Assertions.assertTrue((Long) profile.get("elapsedNanos") > 0);
+        }
+    }
+
+    @Test
+    @DisplayName("Test Basic Traverse Graph rejects the algorithms that need a terminal node")
+    void test_algorithm_needing_a_terminal_is_rejected() {
+        String cypher = "match (a:External {name: 'A'}) " +
+                "call custom.traverseGraph(a, 'sens_value', {algorithm: 'optimal'}) yield nodes " +
+                "return nodes ";
+        ClientException exception = Assertions.assertThrows(ClientException.class, () -> getCypherResults(cypher));
+        Assertions.assertTrue(exception.getMessage().contains("'algorithm' must be 'greedy'"));
+    }
+
+    private void createCycle() {
+        try (Session session = driver.session()) {
+            session.run("match (g:Node {name:'G'}) match (h:Node {name:'H'}) " +
+                    "create (h)-[:RELATION]->(g) " +
+                    "create (h)-[:RELATION]->(:Node {name:'Z', sens_value: 20})");
+        }
+    }
+
     private List<Node> getCypherResults(String cypher) {
         try (Session session = driver.session()) {
             Result result = session.run(cypher);